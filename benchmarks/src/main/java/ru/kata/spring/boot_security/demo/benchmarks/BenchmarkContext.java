@@ -0,0 +1,82 @@
+package ru.kata.spring.boot_security.demo.benchmarks;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.SpringBootSecurityDemoApplication;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.RoleService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Starts the application without a web server on a private in-memory H2 database
+ * and seeds it with generated users.
+ */
+final class BenchmarkContext {
+
+    static final String PASSWORD = "bench";
+
+    private static final int SEED_BATCH = 1000;
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(int bcryptStrength) {
+        // Command-line arguments, so they take precedence over application.properties
+        String[] args = {
+                "--spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID()
+                        + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.flyway.enabled=false",
+                "--spring.jpa.show-sql=false",
+                "--spring.jmx.enabled=false",
+                "--app.security.bcrypt.strength=" + bcryptStrength,
+                "--logging.level.root=WARN",
+                "--logging.level.ru.kata.spring.boot_security.demo=WARN"
+        };
+
+        SpringApplication application = new SpringApplication(SpringBootSecurityDemoApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        return application.run(args);
+    }
+
+    /**
+     * Inserts {@code count} users named user0..user{count-1} with ROLE_USER, every tenth
+     * also ROLE_ADMIN. All share one hash of {@link #PASSWORD}.
+     */
+    static void seedUsers(ConfigurableApplicationContext context, int count) {
+        UserDAO userDAO = context.getBean(UserDAO.class);
+        RoleService roleService = context.getBean(RoleService.class);
+        String hash = context.getBean(PasswordEncoder.class).encode(PASSWORD);
+        Role userRole = roleService.getRoleByName("ROLE_USER");
+        Role adminRole = roleService.getRoleByName("ROLE_ADMIN");
+        TransactionTemplate transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        for (int from = 0; from < count; from += SEED_BATCH) {
+            List<User> batch = new ArrayList<>(SEED_BATCH);
+            for (int i = from; i < Math.min(count, from + SEED_BATCH); i++) {
+                User user = new User(username(i), hash, "Name" + i, 20 + i % 50, "user" + i + "@mail.ru");
+                user.setRoles(i % 10 == 0 ? Set.of(userRole, adminRole) : Set.of(userRole));
+                batch.add(user);
+            }
+            transaction.executeWithoutResult(status -> userDAO.saveUsers(batch));
+        }
+    }
+
+    static String username(int i) {
+        return "user" + i;
+    }
+}
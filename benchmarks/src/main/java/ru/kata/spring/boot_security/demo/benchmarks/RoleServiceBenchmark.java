@@ -0,0 +1,46 @@
+package ru.kata.spring.boot_security.demo.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.service.RoleService;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoleServiceBenchmark {
+
+    private static final Set<String> KNOWN = Set.of("ROLE_ADMIN", "ROLE_USER");
+    private static final Set<String> WITH_UNKNOWN = Set.of("ROLE_USER", "ROLE_MISSING");
+
+    private ConfigurableApplicationContext context;
+    private RoleService roleService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(4);
+        roleService = context.getBean(RoleService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Set<Role> getRolesByNames() {
+        return roleService.getRolesByNames(KNOWN);
+    }
+
+    /** An unknown name falls back to the database. */
+    @Benchmark
+    public Set<Role> getRolesByNamesWithMiss() {
+        return roleService.getRolesByNames(WITH_UNKNOWN);
+    }
+}
@@ -0,0 +1,41 @@
+package ru.kata.spring.boot_security.demo.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class UserListBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int users;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(4);
+        BenchmarkContext.seedUsers(context, users);
+        userService = context.getBean(UserService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<User> getAllUsersWithRoles() {
+        return userService.getAllUsersWithRoles();
+    }
+}
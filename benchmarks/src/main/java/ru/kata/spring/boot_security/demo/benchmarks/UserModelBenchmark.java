@@ -0,0 +1,43 @@
+package ru.kata.spring.boot_security.demo.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.GrantedAuthority;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/** Per-row work done by the admin table and by every authentication. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserModelBenchmark {
+
+    private User user;
+
+    @Setup
+    public void setUp() {
+        Role admin = new Role("ROLE_ADMIN");
+        admin.setId(1L);
+        Role userRole = new Role("ROLE_USER");
+        userRole.setId(2L);
+
+        user = new User("admin", "{bcrypt}x", "Administrator", 30, "admin@mail.ru");
+        user.setRoles(Set.of(admin, userRole));
+    }
+
+    @Benchmark
+    public String getRolesAsString() {
+        return user.getRolesAsString();
+    }
+
+    @Benchmark
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return user.getAuthorities();
+    }
+}
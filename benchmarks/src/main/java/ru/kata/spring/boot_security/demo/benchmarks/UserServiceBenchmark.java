@@ -0,0 +1,72 @@
+package ru.kata.spring.boot_security.demo.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.core.userdetails.UserDetails;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login lookup and the admin edit path. {@code update} is measured with an empty
+ * password (hash copied) and with the current password, which goes through
+ * {@code passwordEncoder.matches}; that branch scales with {@code bcryptStrength}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    @Param({"10000"})
+    public int users;
+
+    @Param({"4"})
+    public int bcryptStrength;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private User edited;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(bcryptStrength);
+        BenchmarkContext.seedUsers(context, users);
+        userService = context.getBean(UserService.class);
+        edited = userService.getUserByIdWithRoles(
+                userService.getUserByUsername(BenchmarkContext.username(users / 2)).getId());
+        // The only writer: a changed password bumps the row version, so no stale-form check
+        edited.setVersion(null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserDetails loadUserByUsername() {
+        int i = ThreadLocalRandom.current().nextInt(users);
+        return userService.loadUserByUsername(BenchmarkContext.username(i));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public User updateKeepingPassword() {
+        edited.setPassword("");
+        userService.update(edited);
+        return edited;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public User updateWithSamePassword() {
+        edited.setPassword(BenchmarkContext.PASSWORD);
+        userService.update(edited);
+        return edited;
+    }
+}
@@ -2,12 +2,18 @@ package ru.kata.spring.boot_security.demo;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 
 @SpringBootApplication
 public class SpringBootSecurityDemoApplication {
 
+	// Startup steps kept for /actuator/startup; later steps are dropped once it is full
+	private static final int STARTUP_STEPS = 8192;
+
 	public static void main(String[] args) {
-		SpringApplication.run(SpringBootSecurityDemoApplication.class, args);
+		SpringApplication application = new SpringApplication(SpringBootSecurityDemoApplication.class);
+		application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS));
+		application.run(args);
 	}
 
 }
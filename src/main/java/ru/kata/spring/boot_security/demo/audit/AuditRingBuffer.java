@@ -0,0 +1,98 @@
+package ru.kata.spring.boot_security.demo.audit;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue on a power-of-two ring (D. Vyukov's bounded MPMC queue).
+ * Every slot carries a sequence number that tells producers and consumers whether it
+ * is free for position {@code p} ({@code seq == p}) or holds the element written at
+ * {@code p} ({@code seq == p + 1}). A full buffer rejects instead of blocking, so
+ * request threads never wait on the audit writer.
+ */
+public class AuditRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    public AuditRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /** Adds the element, or returns {@code false} right away if the buffer is full. */
+    public boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.set(index, element);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /** Removes the oldest element, or returns {@code null} if there is none. */
+    public E poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = elements.get(index);
+                    elements.set(index, null);
+                    sequences.set(index, position + mask + 1);
+                    return element;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /** Moves up to {@code max} elements into {@code sink}; returns how many. */
+    public int drainTo(List<E> sink, int max) {
+        int drained = 0;
+        E element;
+        while (drained < max && (element = poll()) != null) {
+            sink.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /** Approximate number of elements, exact when nothing runs concurrently. */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,193 @@
+package ru.kata.spring.boot_security.demo.audit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.dao.AuditDAO;
+import ru.kata.spring.boot_security.demo.model.AuditEntry;
+import ru.kata.spring.boot_security.demo.service.RoleChangedEvent;
+import ru.kata.spring.boot_security.demo.service.UserChangedEvent;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only audit trail of user and role writes. Committed change events are turned
+ * into {@link AuditEntry} rows on the request thread and offered to a bounded ring
+ * buffer; a single background writer drains it in JDBC batches. Request threads never
+ * wait for the insert: when the buffer is full the entry is dropped and counted.
+ * Whatever is still buffered at shutdown is written before the context closes.
+ */
+@Component
+// Destroyed before the EntityManagerFactory, so the final flush still has a schema to write to.
+@DependsOn("entityManagerFactory")
+@ManagedResource(objectName = "ru.kata.spring.boot_security.demo:type=Audit,name=auditTrail",
+        description = "Asynchronous audit trail writer")
+public class AuditTrail implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditTrail.class);
+
+    static final String SYSTEM_ACTOR = "system";
+
+    private final AuditDAO auditDAO;
+    private final TransactionTemplate transactionTemplate;
+    private final AuditRingBuffer<AuditEntry> buffer;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Thread writer;
+    // Held while a drained batch is being written, so flush() returns only after
+    // everything taken from the buffer before it is in the table.
+    private final Object writeLock = new Object();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private volatile boolean running = true;
+
+    public AuditTrail(AuditDAO auditDAO,
+                      PlatformTransactionManager transactionManager,
+                      @Value("${app.audit.buffer-capacity:8192}") int bufferCapacity,
+                      @Value("${app.audit.batch-size:500}") int batchSize,
+                      @Value("${app.audit.flush-interval:500ms}") Duration flushInterval) {
+        this.auditDAO = auditDAO;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.buffer = new AuditRingBuffer<>(bufferCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.writer = new Thread(this::runWriter, "audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        logger.info("Audit trail: bufferCapacity={}, batchSize={}, flushInterval={}",
+                bufferCapacity, batchSize, flushInterval);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        String details = event.getDetails();
+        if (details == null && event.getPreviousUsername() != null
+                && !event.getPreviousUsername().equals(event.getUsername())) {
+            details = "username " + event.getPreviousUsername() + " -> " + event.getUsername();
+        } else if (details == null && event.getUsername() != null) {
+            details = "username " + event.getUsername();
+        }
+        record("USER_" + event.getType().name(),
+                event.getType() == UserChangedEvent.Type.ALL_DELETED ? null : (long) event.getUserId(),
+                details);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoleChanged(RoleChangedEvent event) {
+        record("ROLE_" + event.getType().name(), event.getRoleId(),
+                event.getName() == null ? null : "name " + event.getName());
+    }
+
+    /** Queues one entry for the writer; drops it if the buffer is full. */
+    public void record(String action, Long entityId, String details) {
+        AuditEntry entry = new AuditEntry(Instant.now(), currentActor(), action, entityId, details);
+        if (!buffer.offer(entry)) {
+            long dropped = droppedCount.incrementAndGet();
+            // Once per thousand, not per entry: a full buffer usually means a burst.
+            if (dropped % 1000 == 1) {
+                logger.warn("Audit buffer is full, {} entries dropped so far; last: {}", dropped, entry);
+            }
+            return;
+        }
+        if (buffer.size() >= batchSize) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /** Writes everything buffered so far on the calling thread. */
+    @ManagedOperation(description = "Write all buffered entries now")
+    public void flush() {
+        while (drainOnce() > 0) {
+            // keep going until the buffer is empty
+        }
+    }
+
+    @ManagedAttribute(description = "Entries waiting to be written")
+    public int getBufferDepth() {
+        return buffer.size();
+    }
+
+    @ManagedAttribute
+    public int getBufferCapacity() {
+        return buffer.capacity();
+    }
+
+    @ManagedAttribute(description = "Entries dropped because the buffer was full")
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @ManagedAttribute
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    @ManagedAttribute(description = "Entries lost because their batch insert failed")
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(Duration.ofSeconds(10).toMillis());
+        flush();
+        logger.info("Audit trail stopped: written={}, dropped={}, failed={}",
+                writtenCount.get(), droppedCount.get(), failedCount.get());
+    }
+
+    private void runWriter() {
+        while (running) {
+            if (drainOnce() < batchSize) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+        }
+    }
+
+    private int drainOnce() {
+        synchronized (writeLock) {
+            List<AuditEntry> batch = new ArrayList<>(Math.min(batchSize, buffer.size() + 1));
+            int drained = buffer.drainTo(batch, batchSize);
+            if (drained == 0) {
+                return 0;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> auditDAO.saveAll(batch));
+                writtenCount.addAndGet(drained);
+            } catch (RuntimeException e) {
+                // Not retried: a batch that fails once (schema, constraint) would fail again
+                // and block everything queued behind it.
+                failedCount.addAndGet(drained);
+                logger.error("Failed to write {} audit entries", drained, e);
+            }
+            return drained;
+        }
+    }
+
+    private static String currentActor() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication.getName() == null) {
+            return SYSTEM_ACTOR;
+        }
+        return authentication.getName();
+    }
+}
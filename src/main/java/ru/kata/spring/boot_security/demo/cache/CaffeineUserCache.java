@@ -0,0 +1,129 @@
+package ru.kata.spring.boot_security.demo.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.kata.spring.boot_security.demo.security.UserPrincipal;
+import ru.kata.spring.boot_security.demo.service.UserChangedEvent;
+
+import java.time.Duration;
+
+/**
+ * Principal cache used by DaoAuthenticationProvider, so a login does not have to run
+ * the user + roles query every time. Bounded (W-TinyLFU) and expiring after write;
+ * entries are evicted after every committed user change.
+ */
+@Component
+@ManagedResource(objectName = "ru.kata.spring.boot_security.demo:type=Cache,name=userCache",
+        description = "Login principal cache")
+public class CaffeineUserCache implements UserCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CaffeineUserCache.class);
+
+    private final Cache<String, UserDetails> cache;
+
+    public CaffeineUserCache(@Value("${app.security.user-cache.maximum-size:10000}") long maximumSize,
+                             @Value("${app.security.user-cache.ttl:10m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        logger.info("User cache: maximumSize={}, ttl={}", maximumSize, ttl);
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        return cache.getIfPresent(username);
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        cache.put(user.getUsername(), user);
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        cache.invalidate(username);
+    }
+
+    public void removeUserById(int userId) {
+        cache.asMap().values().removeIf(user -> user instanceof UserPrincipal && ((UserPrincipal) user).getId() == userId);
+    }
+
+    @ManagedOperation(description = "Evict all cached principals")
+    public void removeAll() {
+        cache.invalidateAll();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        logger.debug("Evicting cached principal: {}", event);
+        switch (event.getType()) {
+            case ALL_DELETED:
+                removeAll();
+                break;
+            case ROLES_CHANGED:
+            case DELETED:
+                if (event.getUsername() != null) {
+                    removeUserFromCache(event.getUsername());
+                } else {
+                    removeUserById(event.getUserId());
+                }
+                break;
+            case UPDATED:
+                if (event.getPreviousUsername() != null) {
+                    removeUserFromCache(event.getPreviousUsername());
+                } else {
+                    removeUserById(event.getUserId());
+                }
+                removeUserFromCache(event.getUsername());
+                break;
+            default:
+                removeUserFromCache(event.getUsername());
+        }
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public Cache<String, UserDetails> getNativeCache() {
+        return cache;
+    }
+
+    @ManagedAttribute(description = "Approximate number of cached principals")
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    @ManagedAttribute
+    public long getHitCount() {
+        return stats().hitCount();
+    }
+
+    @ManagedAttribute
+    public long getMissCount() {
+        return stats().missCount();
+    }
+
+    @ManagedAttribute
+    public double getHitRate() {
+        return stats().hitRate();
+    }
+
+    @ManagedAttribute
+    public long getEvictionCount() {
+        return stats().evictionCount();
+    }
+}
@@ -0,0 +1,93 @@
+package ru.kata.spring.boot_security.demo.cache;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Hit/miss counters of the Hibernate second-level and query cache regions
+ * (configured in ehcache.xml), exported over JMX.
+ */
+@Component
+@ManagedResource(objectName = "ru.kata.spring.boot_security.demo:type=Cache,name=hibernate",
+        description = "Hibernate second-level and query cache")
+public class HibernateCacheStatistics {
+
+    private final SessionFactory sessionFactory;
+
+    public HibernateCacheStatistics(EntityManagerFactory entityManagerFactory) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+    }
+
+    private Statistics statistics() {
+        return sessionFactory.getStatistics();
+    }
+
+    @ManagedAttribute
+    public String[] getRegionNames() {
+        return statistics().getSecondLevelCacheRegionNames();
+    }
+
+    @ManagedAttribute
+    public long getSecondLevelCacheHitCount() {
+        return statistics().getSecondLevelCacheHitCount();
+    }
+
+    @ManagedAttribute
+    public long getSecondLevelCacheMissCount() {
+        return statistics().getSecondLevelCacheMissCount();
+    }
+
+    @ManagedAttribute
+    public double getSecondLevelCacheHitRate() {
+        return hitRate(getSecondLevelCacheHitCount(), getSecondLevelCacheMissCount());
+    }
+
+    @ManagedAttribute
+    public long getQueryCacheHitCount() {
+        return statistics().getQueryCacheHitCount();
+    }
+
+    @ManagedAttribute
+    public long getQueryCacheMissCount() {
+        return statistics().getQueryCacheMissCount();
+    }
+
+    @ManagedAttribute
+    public double getQueryCacheHitRate() {
+        return hitRate(getQueryCacheHitCount(), getQueryCacheMissCount());
+    }
+
+    /** Statistics of one region, or {@code null} if there is no such region. */
+    public CacheRegionStatistics region(String regionName) {
+        return statistics().getCacheRegionStatistics(regionName);
+    }
+
+    @ManagedOperation(description = "Hits, misses, puts and size of one cache region")
+    public String describeRegion(String regionName) {
+        CacheRegionStatistics region = region(regionName);
+        if (region == null) {
+            return "No such region: " + regionName;
+        }
+        return String.format("hits=%d, misses=%d, hitRate=%.3f, puts=%d, elementsInMemory=%d",
+                region.getHitCount(), region.getMissCount(),
+                hitRate(region.getHitCount(), region.getMissCount()),
+                region.getPutCount(), region.getElementCountInMemory());
+    }
+
+    @ManagedOperation(description = "Evict all second-level and query cache regions")
+    public void evictAll() {
+        sessionFactory.getCache().evictAllRegions();
+    }
+
+    private static double hitRate(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
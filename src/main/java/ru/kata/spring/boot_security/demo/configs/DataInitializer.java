@@ -3,14 +3,16 @@ package ru.kata.spring.boot_security.demo.configs;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.kata.spring.boot_security.demo.model.Role;
 import ru.kata.spring.boot_security.demo.model.User;
 import ru.kata.spring.boot_security.demo.service.RoleService;
 import ru.kata.spring.boot_security.demo.service.UserService;
 
-import java.util.HashSet;
 import java.util.Set;
 
 @Component
@@ -19,48 +21,57 @@ public class DataInitializer implements CommandLineRunner {
 
     private final RoleService roleService;
     private final UserService userService;
+    private final TransactionTemplate newTransaction;
 
     @Autowired
-    public DataInitializer(RoleService roleService, UserService userService) {
+    public DataInitializer(RoleService roleService, UserService userService,
+                           PlatformTransactionManager transactionManager) {
         this.roleService = roleService;
         this.userService = userService;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
+    /**
+     * Idempotent: on a restart the roles come from the role registry (loaded at refresh)
+     * and the default users are checked with one query, so nothing is hashed or written.
+     * The roles and each default user are created in a transaction of their own, so a
+     * node that loses a first-boot race to another one rolls back only that insert and
+     * logs the duplicate.
+     */
     @Override
-    @Transactional
     public void run(String... args) {
-        createDefaultRoles();
+        inNewTransaction("Default roles", roleService::createDefaultRoles);
 
-        if (!userService.existsByUsername("admin")) {
+        // Read-write, so it is answered by the primary the inserts go to, not a lagging replica
+        Set<String> existing = newTransaction.execute(
+                status -> userService.getExistingUsernames(Set.of("admin", "user")));
+
+        if (!existing.contains("admin")) {
             createDefaultAdmin();
         }
 
-        if (!userService.existsByUsername("user")) {
+        if (!existing.contains("user")) {
             createDefaultUser();
         }
     }
 
-    private void createDefaultRoles() {
-        if (roleService.getRoleByName("ROLE_ADMIN") == null) {
-            Role adminRole = new Role("ROLE_ADMIN");
-            roleService.saveRole(adminRole);
-            log.info("Created role: ROLE_ADMIN");
-        }
-
-        if (roleService.getRoleByName("ROLE_USER") == null) {
-            Role userRole = new Role("ROLE_USER");
-            roleService.saveRole(userRole);
-            log.info("Created role: ROLE_USER");
+    // Caught outside the transaction: inside it, the failed insert has already marked it rollback-only
+    private void inNewTransaction(String what, Runnable work) {
+        try {
+            newTransaction.executeWithoutResult(status -> work.run());
+        } catch (DataIntegrityViolationException e) {
+            log.info("{} already created by another node: {}", what, e.getMostSpecificCause().getMessage());
+        } catch (Exception e) {
+            log.error("Failed to create {}: {}", what, e.getMessage(), e);
         }
     }
 
-    private void createDefaultAdmin() {
-        try {
+    void createDefaultAdmin() {
+        inNewTransaction("Admin user", () -> {
             log.info("Creating admin user via UserService...");
 
-            Set<Role> roles = new HashSet<>();
-            roles.add(roleService.getRoleByName("ROLE_ADMIN"));
-            roles.add(roleService.getRoleByName("ROLE_USER"));
+            Set<Role> roles = roleService.getRolesByNames(Set.of("ROLE_ADMIN", "ROLE_USER"));
 
             User admin = new User();
             admin.setUsername("admin");
@@ -73,17 +84,14 @@ public class DataInitializer implements CommandLineRunner {
             userService.save(admin);
 
             log.info("Admin created successfully via UserService");
-        } catch (Exception e) {
-            log.error("Failed to create admin user: {}", e.getMessage(), e);
-        }
+        });
     }
 
-    private void createDefaultUser() {
-        try {
+    void createDefaultUser() {
+        inNewTransaction("Default user", () -> {
             log.info("Creating default user via UserService...");
 
-            Set<Role> roles = new HashSet<>();
-            roles.add(roleService.getRoleByName("ROLE_USER"));
+            Set<Role> roles = roleService.getRolesByNames(Set.of("ROLE_USER"));
 
             User user = new User();
             user.setUsername("user");
@@ -96,8 +104,6 @@ public class DataInitializer implements CommandLineRunner {
             userService.save(user);
 
             log.info("Default user created successfully via UserService");
-        } catch (Exception e) {
-            log.error("Failed to create default user: {}", e.getMessage(), e);
-        }
+        });
     }
 }
\ No newline at end of file
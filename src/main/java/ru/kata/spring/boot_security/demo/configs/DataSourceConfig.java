@@ -0,0 +1,110 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import ru.kata.spring.boot_security.demo.datasource.ReadFromPrimaryAspect;
+import ru.kata.spring.boot_security.demo.datasource.ReadWriteRoutingDataSource;
+import ru.kata.spring.boot_security.demo.datasource.ReadYourWritesFilter;
+import ru.kata.spring.boot_security.demo.datasource.ReplicaReadJpaDialect;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read/write splitting, only active when replica URLs are configured. Without them
+ * Spring Boot's single spring.datasource pool is used as before.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.datasource.replica", name = "urls")
+public class DataSourceConfig {
+
+    /** The spring.datasource pool, still configured by spring.datasource.hikari.*. */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReadWriteRoutingDataSource routingDataSource(
+            HikariDataSource primaryDataSource,
+            DataSourceProperties properties,
+            @Value("${app.datasource.replica.urls}") List<String> urls,
+            @Value("${app.datasource.replica.username:${spring.datasource.username:}}") String username,
+            @Value("${app.datasource.replica.password:${spring.datasource.password:}}") String password,
+            @Value("${app.datasource.replica.maximum-pool-size:10}") int maximumPoolSize,
+            @Value("${app.datasource.replica.connection-timeout:500ms}") Duration connectionTimeout,
+            @Value("${app.datasource.replica.health-check-interval:5s}") Duration healthCheckInterval) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : urls) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(username);
+            replica.setPassword(password);
+            replica.setReadOnly(true);
+            replica.setMaximumPoolSize(maximumPoolSize);
+            // A dead replica must cost a health check or a routed read well under a second
+            // (then the read goes to the primary), not Hikari's default 30 s.
+            replica.setConnectionTimeout(connectionTimeout.toMillis());
+            replica.setValidationTimeout(connectionTimeout.toMillis());
+            // A replica that is down at startup is marked unhealthy instead of failing the boot.
+            replica.setInitializationFailTimeout(-1);
+            replicas.put(replica.getPoolName(), replica);
+        }
+        return new ReadWriteRoutingDataSource(primaryDataSource, replicas, healthCheckInterval);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @Bean
+    public ReadFromPrimaryAspect readFromPrimaryAspect() {
+        return new ReadFromPrimaryAspect();
+    }
+
+    /** Sets ReplicaReadJpaDialect on the entity manager factory Spring Boot builds. */
+    @Bean
+    public static BeanPostProcessor replicaReadJpaDialect(ObjectProvider<ReadWriteRoutingDataSource> routingDataSource) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof LocalContainerEntityManagerFactoryBean) {
+                    ((LocalContainerEntityManagerFactoryBean) bean).setJpaDialect(new ReplicaReadJpaDialect(routingDataSource));
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+            @Value("${app.datasource.replica.read-your-writes-window:5s}") Duration window) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(window));
+        // Outside the security chain: the login itself may write (password rehash).
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 100);
+        return registration;
+    }
+}
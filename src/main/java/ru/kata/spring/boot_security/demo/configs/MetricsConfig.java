@@ -0,0 +1,99 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.metrics.jdbc.DataSourcePoolMetrics;
+import org.springframework.boot.jdbc.metadata.HikariDataSourcePoolMetadata;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.kata.spring.boot_security.demo.audit.AuditTrail;
+import ru.kata.spring.boot_security.demo.cache.CaffeineUserCache;
+import ru.kata.spring.boot_security.demo.datasource.ReadWriteRoutingDataSource;
+import ru.kata.spring.boot_security.demo.security.BoundedPasswordEncoder;
+import ru.kata.spring.boot_security.demo.security.LoginRateLimiter;
+
+/**
+ * Gauges for the application's own pools and buffers. Hibernate statistics and the
+ * HikariCP pool are bound by Spring Boot; method timers are in MetricsAspect.
+ * Replica pools are not beans (DataSourceConfig), so their gauges are bound here.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder passwordHashingMetrics(BoundedPasswordEncoder passwordEncoder) {
+        return registry -> {
+            Gauge.builder("app.password.hashing.queue", passwordEncoder, BoundedPasswordEncoder::getQueueDepth)
+                    .description("Hashes waiting for a hashing thread")
+                    .register(registry);
+            Gauge.builder("app.password.hashing.active", passwordEncoder, BoundedPasswordEncoder::getActiveCount)
+                    .register(registry);
+            FunctionCounter.builder("app.password.hashing.rejected", passwordEncoder,
+                            BoundedPasswordEncoder::getRejectedCount)
+                    .description("Hashes shed because the queue was full or the wait timed out")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder loginThrottleMetrics(LoginRateLimiter loginRateLimiter) {
+        return registry -> {
+            FunctionCounter.builder("app.login.throttled", loginRateLimiter, LoginRateLimiter::getRejectedByAddress)
+                    .tag("limit", "address")
+                    .description("Login attempts answered with 429")
+                    .register(registry);
+            FunctionCounter.builder("app.login.throttled", loginRateLimiter, LoginRateLimiter::getRejectedByUsername)
+                    .tag("limit", "username")
+                    .description("Login attempts answered with 429")
+                    .register(registry);
+            Gauge.builder("app.login.throttle.buckets", loginRateLimiter, LoginRateLimiter::getBucketCount)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder routingDataSourceMetrics(ObjectProvider<ReadWriteRoutingDataSource> routingDataSource) {
+        return registry -> routingDataSource.ifAvailable(routing -> {
+            FunctionCounter.builder("app.datasource.connections", routing,
+                            ReadWriteRoutingDataSource::getPrimaryConnectionCount)
+                    .tag("target", "primary")
+                    .register(registry);
+            FunctionCounter.builder("app.datasource.connections", routing,
+                            ReadWriteRoutingDataSource::getReplicaConnectionCount)
+                    .tag("target", "replica")
+                    .register(registry);
+            Gauge.builder("app.datasource.replicas.healthy", routing, ReadWriteRoutingDataSource::getHealthyReplicaCount)
+                    .register(registry);
+            routing.getReplicaDataSources().forEach((name, dataSource) ->
+                    new DataSourcePoolMetrics(dataSource,
+                            pool -> new HikariDataSourcePoolMetadata((HikariDataSource) pool),
+                            name, Tags.empty()).bindTo(registry));
+        });
+    }
+
+    @Bean
+    public MeterBinder userCacheMetrics(CaffeineUserCache userCache) {
+        return registry -> CaffeineCacheMetrics.monitor(registry, userCache.getNativeCache(), "userCache");
+    }
+
+    @Bean
+    public MeterBinder auditTrailMetrics(AuditTrail auditTrail) {
+        return registry -> {
+            Gauge.builder("app.audit.buffer.depth", auditTrail, AuditTrail::getBufferDepth)
+                    .register(registry);
+            Gauge.builder("app.audit.buffer.capacity", auditTrail, AuditTrail::getBufferCapacity)
+                    .register(registry);
+            FunctionCounter.builder("app.audit.dropped", auditTrail, AuditTrail::getDroppedCount)
+                    .register(registry);
+            FunctionCounter.builder("app.audit.written", auditTrail, AuditTrail::getWrittenCount)
+                    .register(registry);
+            FunctionCounter.builder("app.audit.failed", auditTrail, AuditTrail::getFailedCount)
+                    .register(registry);
+        };
+    }
+}
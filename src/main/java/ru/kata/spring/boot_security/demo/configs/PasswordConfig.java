@@ -1,15 +1,40 @@
 package ru.kata.spring.boot_security.demo.configs;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.kata.spring.boot_security.demo.security.BoundedPasswordEncoder;
+
+import java.time.Duration;
+import java.util.Map;
 
 @Configuration
 public class PasswordConfig {
 
+    /**
+     * Writes "{bcrypt}" hashes with the configured cost. Old hashes without the prefix
+     * are still matched as bcrypt and are rehashed on the next successful login.
+     */
+    @Bean
+    public DelegatingPasswordEncoder delegatingPasswordEncoder(
+            @Value("${app.security.bcrypt.strength:12}") int strength) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
+    }
+
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(12);
+    @Primary
+    public BoundedPasswordEncoder passwordEncoder(DelegatingPasswordEncoder delegatingPasswordEncoder,
+                                                  @Value("${app.security.hashing.threads:0}") int threads,
+                                                  @Value("${app.security.hashing.queue-capacity:64}") int queueCapacity,
+                                                  @Value("${app.security.hashing.timeout:5s}") Duration timeout) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(delegatingPasswordEncoder, poolSize, queueCapacity, timeout);
     }
 }
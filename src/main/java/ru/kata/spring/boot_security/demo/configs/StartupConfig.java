@@ -0,0 +1,58 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.actuate.autoconfigure.metrics.jdbc.DataSourcePoolMetricsAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.kata.spring.boot_security.demo.audit.AuditTrail;
+import ru.kata.spring.boot_security.demo.cache.HibernateCacheStatistics;
+import ru.kata.spring.boot_security.demo.service.RoleRegistry;
+import ru.kata.spring.boot_security.demo.service.UserSearchIndex;
+import ru.kata.spring.boot_security.demo.service.UserService;
+import ru.kata.spring.boot_security.demo.service.UsernameIndex;
+
+/**
+ * Startup behaviour of the faststart profile (application-faststart.properties).
+ * Phase timings are buffered in the main class and served at /actuator/startup.
+ */
+@Configuration
+public class StartupConfig {
+
+    /**
+     * With spring.main.lazy-initialization beans are created on first use. The login path,
+     * the in-memory indexes and the audit writer stay eager, so the first requests after
+     * the node reports ready do not pay for them; controllers, export, import and bulk
+     * services are created when first called. Meter binders and the cache statistics bean
+     * stay eager too, so metrics and JMX are complete from the start.
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter eagerLoginPath() {
+        return LazyInitializationExcludeFilter.forBeanTypes(UserService.class, UserCache.class,
+                PasswordEncoder.class, RoleRegistry.class, UsernameIndex.class, UserSearchIndex.class,
+                AuditTrail.class, MeterBinder.class, HibernateCacheStatistics.class);
+    }
+
+    // Binds the HikariCP metrics from an @Autowired method, which only works before the pool starts
+    @Bean
+    public static LazyInitializationExcludeFilter eagerPoolMetrics() {
+        return (beanName, beanDefinition, beanType) ->
+                beanType.getName().startsWith(DataSourcePoolMetricsAutoConfiguration.class.getName());
+    }
+
+    /**
+     * Training run of the AppCDS build (mvn -Pappcds package): start, load the classes a
+     * started node needs, exit so the JVM writes the archive.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.startup.exit-on-ready", havingValue = "true")
+    public ApplicationListener<ApplicationReadyEvent> exitOnReady() {
+        return event -> System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+}
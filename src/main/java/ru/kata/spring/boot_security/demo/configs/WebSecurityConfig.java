@@ -1,5 +1,6 @@
 package ru.kata.spring.boot_security.demo.configs;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -9,29 +10,65 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
+import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.util.matcher.AndRequestMatcher;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestHeaderRequestMatcher;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import ru.kata.spring.boot_security.demo.security.LoginFailureHandler;
+import ru.kata.spring.boot_security.demo.security.LoginRateLimiter;
+import ru.kata.spring.boot_security.demo.security.LoginThrottleFilter;
+import ru.kata.spring.boot_security.demo.security.TokenAuthenticationFilter;
+import ru.kata.spring.boot_security.demo.security.TokenCookies;
+import ru.kata.spring.boot_security.demo.security.TokenLoginSuccessHandler;
+import ru.kata.spring.boot_security.demo.security.TokenService;
 
 @Configuration
 @EnableWebSecurity
 public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
     private final SuccessUserHandler successUserHandler;
+    private final LoginFailureHandler loginFailureHandler;
     private final UserDetailsService userDetailsService;
+    private final UserDetailsPasswordService userDetailsPasswordService;
     private final PasswordEncoder passwordEncoder;
+    private final UserCache userCache;
+    private final LoginRateLimiter loginRateLimiter;
+    // Only present with app.security.stateless.enabled=true
+    private final TokenService tokenService;
 
     @Autowired
     public WebSecurityConfig(SuccessUserHandler successUserHandler,
+                             LoginFailureHandler loginFailureHandler,
                              UserDetailsService userDetailsService,
-                             PasswordEncoder passwordEncoder) {
+                             UserDetailsPasswordService userDetailsPasswordService,
+                             PasswordEncoder passwordEncoder,
+                             UserCache userCache,
+                             LoginRateLimiter loginRateLimiter,
+                             ObjectProvider<TokenService> tokenService) {
         this.successUserHandler = successUserHandler;
+        this.loginFailureHandler = loginFailureHandler;
         this.userDetailsService = userDetailsService;
+        this.userDetailsPasswordService = userDetailsPasswordService;
         this.passwordEncoder = passwordEncoder;
+        this.userCache = userCache;
+        this.loginRateLimiter = loginRateLimiter;
+        this.tokenService = tokenService.getIfAvailable();
     }
 
     @Override
@@ -41,16 +78,45 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
     @Override
     protected void configure(HttpSecurity http) throws Exception {
+        AuthenticationSuccessHandler loginSuccessHandler = successUserHandler;
+        if (tokenService != null) {
+            configureStateless(http);
+            loginSuccessHandler = new TokenLoginSuccessHandler(tokenService, successUserHandler);
+        }
         http
+                .addFilterBefore(new LoginThrottleFilter(loginRateLimiter), UsernamePasswordAuthenticationFilter.class)
+                // API writes (and token requests) authenticate every request with an Authorization
+                // header rather than a cookie, so there is nothing for a CSRF token to protect
+                .csrf()
+                .ignoringRequestMatchers(new AndRequestMatcher(
+                        new OrRequestMatcher(new AntPathRequestMatcher("/api/**"), new AntPathRequestMatcher("/auth/token")),
+                        new RequestHeaderRequestMatcher(HttpHeaders.AUTHORIZATION)),
+                        // The refresh token in the body is the credential, a forged request has none
+                        new AntPathRequestMatcher("/auth/refresh", "POST"))
+                .and()
                 .authorizeRequests()
-                .antMatchers("/", "/login").permitAll()
+                .antMatchers("/", "/login", "/auth/refresh").permitAll()
                 .antMatchers("/user/**").hasAnyRole("USER", "ADMIN")
                 .antMatchers("/admin/**").hasRole("ADMIN")
+                .antMatchers("/api/**").hasRole("ADMIN")
+                .antMatchers("/actuator/health").permitAll()
+                .antMatchers("/actuator/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
                 .and()
+                // Integrations call /api (and scrapers /actuator) with HTTP Basic and get
+                // a 401 instead of the login page
+                .httpBasic()
+                .and()
+                .exceptionHandling()
+                .defaultAuthenticationEntryPointFor(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED),
+                        new OrRequestMatcher(new AntPathRequestMatcher("/api/**"),
+                                new AntPathRequestMatcher("/auth/**"),
+                                new AntPathRequestMatcher("/actuator/**")))
+                .and()
                 .formLogin()
                 .loginPage("/login")
-                .successHandler(successUserHandler)
+                .successHandler(loginSuccessHandler)
+                .failureHandler(loginFailureHandler)
                 .permitAll()
                 .and()
                 .logout()
@@ -59,11 +125,32 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 .permitAll();
     }
 
+    /**
+     * No HttpSession at all: the security context comes from the signed tokens on every
+     * request (TokenAuthenticationFilter), the saved request and the CSRF token move to a
+     * NullRequestCache (implied by STATELESS) and a cookie.
+     */
+    private void configureStateless(HttpSecurity http) throws Exception {
+        http
+                .sessionManagement()
+                .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                .and()
+                .csrf()
+                .csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse())
+                .and()
+                .logout()
+                .deleteCookies(TokenCookies.ACCESS, TokenCookies.REFRESH)
+                .and()
+                .addFilterBefore(new TokenAuthenticationFilter(tokenService), UsernamePasswordAuthenticationFilter.class);
+    }
+
     @Bean
     public DaoAuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
         authProvider.setPasswordEncoder(passwordEncoder);
+        authProvider.setUserDetailsPasswordService(userDetailsPasswordService);
+        authProvider.setUserCache(userCache);
         return authProvider;
     }
 }
\ No newline at end of file
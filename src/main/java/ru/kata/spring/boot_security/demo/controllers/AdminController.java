@@ -3,6 +3,10 @@ package ru.kata.spring.boot_security.demo.controllers;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -11,15 +15,29 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import ru.kata.spring.boot_security.demo.dto.BulkResult;
+import ru.kata.spring.boot_security.demo.dto.KeysetPage;
+import ru.kata.spring.boot_security.demo.dto.ProvisioningReport;
+import ru.kata.spring.boot_security.demo.dto.UserDto;
+import ru.kata.spring.boot_security.demo.dto.UserSearchPage;
+import ru.kata.spring.boot_security.demo.dto.UserSort;
 import ru.kata.spring.boot_security.demo.model.Role;
 import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.security.UserPrincipal;
 import ru.kata.spring.boot_security.demo.service.RoleService;
+import ru.kata.spring.boot_security.demo.service.UserBulkService;
+import ru.kata.spring.boot_security.demo.service.UserExportService;
+import ru.kata.spring.boot_security.demo.service.UserProvisioningService;
 import ru.kata.spring.boot_security.demo.service.UserService;
 import ru.kata.spring.boot_security.demo.service.UserServiceImpl;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -30,6 +48,39 @@ public class AdminController {
 
     private UserService userService;
     private RoleService roleService;
+    private UserProvisioningService userProvisioningService;
+    private UserExportService userExportService;
+    private UserBulkService userBulkService;
+    private PageETags pageETags;
+
+    @Autowired
+    public void setPageETags(PageETags pageETags) {
+        this.pageETags = pageETags;
+    }
+
+    @Autowired
+    public void setUserProvisioningService(UserProvisioningService userProvisioningService) {
+        this.userProvisioningService = userProvisioningService;
+    }
+
+    @Autowired
+    public void setUserBulkService(UserBulkService userBulkService) {
+        this.userBulkService = userBulkService;
+    }
+
+    @Autowired
+    public void setUserExportService(UserExportService userExportService) {
+        this.userExportService = userExportService;
+    }
+
+    @Value("${app.admin.page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${app.admin.max-page-size:100}")
+    private int maxPageSize;
+
+    @Value("${app.bulk.max-ids:10000}")
+    private int maxBulkIds;
 
     @Autowired
     public void setUserService(UserService userService){
@@ -42,11 +93,29 @@ public class AdminController {
     }
 
     @GetMapping("")
-    public String adminPage(Model model, @AuthenticationPrincipal User currentUser) {
-        model.addAttribute("listOfUsers", userService.getAllUsers());
+    public String adminPage(Model model, @AuthenticationPrincipal UserPrincipal currentUser,
+                            @RequestParam(value = "sort", required = false) String sort,
+                            @RequestParam(value = "after", required = false) String after,
+                            @RequestParam(value = "before", required = false) String before,
+                            @RequestParam(value = "size", required = false) Integer size,
+                            @RequestParam(value = "q", required = false) String query,
+                            @RequestParam(value = "page", defaultValue = "0") int page,
+                            Authentication authentication,
+                            HttpServletRequest request,
+                            HttpServletResponse response) {
+        if (pageETags.checkNotModified(request, response, authentication)) {
+            return null;
+        }
+        if (query != null && !query.isBlank()) {
+            addSearchResults(model, query, page, size);
+        } else {
+            addUsersPage(model, sort, after, before, size);
+        }
         model.addAttribute("user", new User());
         model.addAttribute("hasFormErrors", false);
         model.addAttribute("currentUser", currentUser);
+        // Role ids are generated, so the bulk form takes them from the database
+        model.addAttribute("allRoles", roleService.getAllRoles());
         return "admin/index";
     }
 
@@ -56,25 +125,14 @@ public class AdminController {
                          @RequestParam(value = "roleIds", required = false) List<Long> roleIds,
                          Model model) {
 
-        if (userService.getUserByUsername(user.getUsername()) != null) {
-            bindingResult.rejectValue("username", "error.username",
-                    "Пользователь с таким логином уже существует");
-        }
-
+        // Username uniqueness is checked by @UniqueUsername during binding
         if (bindingResult.hasErrors()){
-            model.addAttribute("listOfUsers", userService.getAllUsers());
-            model.addAttribute("hasFormErrors", true);
-            return "admin/index";
+            return createFormWithErrors(model);
         }
 
         Set<Role> roles = new HashSet<>();
         if (roleIds != null && !roleIds.isEmpty()) {
-            for (Long roleId : roleIds) {
-                Role role = roleService.getRoleById(roleId);
-                if (role != null) {
-                    roles.add(role);
-                }
-            }
+            roles.addAll(roleService.getRolesByIds(roleIds));
         } else {
             Role userRole = roleService.getRoleByName("ROLE_USER");
             if (userRole != null) {
@@ -82,10 +140,24 @@ public class AdminController {
             }
         }
 
-        userService.save(user, roles);
+        try {
+            userService.save(user, roles);
+        } catch (DataIntegrityViolationException e) {
+            // Taken by a concurrent request or another node: the unique key has the last word
+            bindingResult.rejectValue("username", "error.username",
+                    "Пользователь с таким логином уже существует");
+            return createFormWithErrors(model);
+        }
         return "redirect:/admin";
     }
 
+    private String createFormWithErrors(Model model) {
+        addUsersPage(model, null, null, null, null);
+        model.addAttribute("hasFormErrors", true);
+        model.addAttribute("allRoles", roleService.getAllRoles());
+        return "admin/index";
+    }
+
     @PostMapping("/update/{id}")
     public String updateUser(@PathVariable("id") int id,
                              @ModelAttribute("user") @Valid User user,
@@ -93,33 +165,98 @@ public class AdminController {
                              @RequestParam(value = "roleIds", required = false) List<Long> roleIds,
                              Model model) {
 
-        User existingUser = userService.getUserByUsername(user.getUsername());
-        if (existingUser != null && existingUser.getId() != id) {
-            bindingResult.rejectValue("username", "error.username",
-                    "Пользователь с таким логином уже существует");
-        }
-
         if (bindingResult.hasErrors()) {
             model.addAttribute("allRoles", roleService.getAllRoles());
             return "admin/edit";
         }
 
         user.setId(id);
+        try {
+            userService.update(user, roleIds);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // Someone saved this user after the page was rendered; show the fresh row
+            // instead of overwriting their change.
+            return "redirect:/admin?conflict";
+        }
 
-        Set<Role> roles = new HashSet<>();
-        if (roleIds != null && !roleIds.isEmpty()) {
-            for (Long roleId : roleIds) {
-                Role role = roleService.getRoleById(roleId);
-                if (role != null) {
-                    roles.add(role);
-                }
-            }
+        return "redirect:/admin";
+    }
+
+    @PostMapping("/users/import")
+    @ResponseBody
+    public ProvisioningReport importUsers(@RequestParam("file") MultipartFile file,
+                                          @RequestParam(value = "format", required = false) String format)
+            throws IOException {
+        String name = file.getOriginalFilename() == null ? "" : file.getOriginalFilename().toLowerCase();
+        UserProvisioningService.Format importFormat =
+                "json".equalsIgnoreCase(format) || (format == null && name.endsWith(".json"))
+                        ? UserProvisioningService.Format.JSON
+                        : UserProvisioningService.Format.CSV;
+        try (InputStream input = file.getInputStream()) {
+            return userProvisioningService.provision(input, importFormat);
         }
-        user.setRoles(roles);
+    }
+
+    @GetMapping("/users/export")
+    public void exportUsers(@RequestParam(value = "format", defaultValue = "csv") String format,
+                            HttpServletResponse response) throws IOException {
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        response.setContentType(ndjson ? "application/x-ndjson" : "text/csv");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition",
+                "attachment; filename=\"users." + (ndjson ? "ndjson" : "csv") + "\"");
+        userExportService.export(response.getOutputStream(),
+                ndjson ? UserExportService.Format.NDJSON : UserExportService.Format.CSV);
+    }
 
-        userService.update(user);
+    private void addUsersPage(Model model, String sort, String after, String before, Integer size) {
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        // Flat rows plus one query for all their role names: two queries per page, whatever its size
+        KeysetPage<UserDto> page = userService.getUserDtoPage(UserSort.fromParam(sort), after, before, pageSize);
+        model.addAttribute("page", page);
+        model.addAttribute("pageSize", pageSize);
+        model.addAttribute("listOfUsers", page.getContent());
+    }
 
-        return "redirect:/admin";
+    private void addSearchResults(Model model, String query, int page, Integer size) {
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        UserSearchPage search = userService.searchUsers(query, Math.max(0, page), pageSize);
+        model.addAttribute("search", search);
+        model.addAttribute("pageSize", pageSize);
+        model.addAttribute("listOfUsers", search.getContent());
+    }
+
+    /**
+     * Deletes the checked users, or grants or revokes one role for all of them, and
+     * answers with the outcome per id. The signed-in admin is never deleted this way.
+     */
+    @PostMapping("/users/bulk")
+    @ResponseBody
+    public BulkResult bulkUpdate(@RequestParam("action") String action,
+                                 @RequestParam("ids") List<Integer> ids,
+                                 @RequestParam(value = "roleId", required = false) Long roleId,
+                                 @AuthenticationPrincipal UserPrincipal currentUser) {
+        if (ids.size() > maxBulkIds) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + maxBulkIds + " users per request");
+        }
+        if (!"delete".equals(action) && roleId == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "roleId is required");
+        }
+        try {
+            switch (action) {
+                case "delete":
+                    return userBulkService.deleteUsers(ids, currentUser == null ? 0 : currentUser.getId());
+                case "grant":
+                    return userBulkService.grantRole(ids, roleId);
+                case "revoke":
+                    return userBulkService.revokeRole(ids, roleId);
+                default:
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown action: " + action);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
     }
 
     @PostMapping("/delete/{id}")
@@ -0,0 +1,83 @@
+package ru.kata.spring.boot_security.demo.controllers;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.kata.spring.boot_security.demo.dto.KeysetPage;
+import ru.kata.spring.boot_security.demo.dto.RoleDto;
+import ru.kata.spring.boot_security.demo.dto.UserDto;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Jackson writers for the REST API, built once and reused: an {@link ObjectWriter} has
+ * its serializers resolved after the first use, so later responses skip introspection.
+ * Field selection ({@code ?fields=id,username}) picks a writer per distinct field set;
+ * unknown names are dropped, so there are at most 2^7 of them.
+ */
+@Component
+public class ApiJsonWriters {
+
+    static final Set<String> USER_FIELDS = Set.of("id", "username", "name", "age", "email", "version", "roles");
+
+    private static final String USER_FILTER = "userFields";
+
+    @JsonFilter(USER_FILTER)
+    private interface UserDtoFields {
+    }
+
+    @JsonIgnoreProperties("sortParam")
+    private interface KeysetPageFields {
+    }
+
+    private final ObjectMapper apiMapper;
+    private final ObjectWriter allUserFields;
+    private final ObjectWriter roles;
+    private final ConcurrentMap<Set<String>, ObjectWriter> selectedUserFields = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ApiJsonWriters(ObjectMapper objectMapper) {
+        // A copy, so the filter mix-in does not reach the application-wide mapper
+        this.apiMapper = objectMapper.copy()
+                .addMixIn(UserDto.class, UserDtoFields.class)
+                .addMixIn(KeysetPage.class, KeysetPageFields.class);
+        this.allUserFields = userWriter(SimpleBeanPropertyFilter.serializeAll());
+        this.roles = apiMapper.writerFor(apiMapper.getTypeFactory()
+                .constructCollectionType(List.class, RoleDto.class));
+    }
+
+    /** Writer for users or pages of users limited to the given comma-separated fields. */
+    public ObjectWriter users(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return allUserFields;
+        }
+        Set<String> selected = Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(USER_FIELDS::contains)
+                .collect(Collectors.toCollection(TreeSet::new));
+        if (selected.isEmpty() || selected.size() == USER_FIELDS.size()) {
+            return allUserFields;
+        }
+        return selectedUserFields.computeIfAbsent(selected,
+                names -> userWriter(SimpleBeanPropertyFilter.filterOutAllExcept(names)));
+    }
+
+    public ObjectWriter roles() {
+        return roles;
+    }
+
+    private ObjectWriter userWriter(SimpleBeanPropertyFilter filter) {
+        return apiMapper.writer(new SimpleFilterProvider().addFilter(USER_FILTER, filter));
+    }
+}
@@ -0,0 +1,64 @@
+package ru.kata.spring.boot_security.demo.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.kata.spring.boot_security.demo.security.TokenAuthentication;
+import ru.kata.spring.boot_security.demo.security.TokenService;
+import ru.kata.spring.boot_security.demo.security.UserPrincipal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bearer tokens for API clients in the stateless mode:
+ * {@code POST /auth/token} with HTTP Basic returns an access and a refresh token,
+ * {@code POST /auth/refresh} with {@code refresh_token} returns a new access token.
+ */
+@RestController
+@RequestMapping("/auth")
+@ConditionalOnProperty(name = "app.security.stateless.enabled", havingValue = "true")
+public class AuthTokenController {
+
+    private TokenService tokenService;
+
+    @Autowired
+    public void setTokenService(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @PostMapping("/token")
+    public ResponseEntity<Map<String, Object>> issue(Authentication authentication) {
+        // A token must not be traded for a fresh refresh token, or it would never expire
+        if (authentication instanceof TokenAuthentication) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        UserPrincipal user = (UserPrincipal) authentication.getPrincipal();
+        Map<String, Object> body = accessToken(user);
+        body.put("refresh_token", tokenService.issue(user, TokenService.Type.REFRESH));
+        return ResponseEntity.ok(body);
+    }
+
+    @PostMapping("/refresh")
+    public ResponseEntity<Map<String, Object>> refresh(@RequestParam("refresh_token") String refreshToken) {
+        UserPrincipal user = tokenService.refresh(refreshToken);
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(accessToken(user));
+    }
+
+    private Map<String, Object> accessToken(UserPrincipal user) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("access_token", tokenService.issue(user, TokenService.Type.ACCESS));
+        body.put("token_type", "Bearer");
+        body.put("expires_in", tokenService.getAccessTtl().toSeconds());
+        return body;
+    }
+}
@@ -0,0 +1,24 @@
+package ru.kata.spring.boot_security.demo.controllers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import ru.kata.spring.boot_security.demo.security.PasswordHashingRejectedException;
+
+@ControllerAdvice
+public class OverloadExceptionHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(OverloadExceptionHandler.class);
+
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    public ResponseEntity<String> passwordHashingRejected(PasswordHashingRejectedException e) {
+        logger.warn("Request shed: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("Server is busy, please retry");
+    }
+}
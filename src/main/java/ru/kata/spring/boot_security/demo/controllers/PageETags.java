@@ -0,0 +1,68 @@
+package ru.kata.spring.boot_security.demo.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Weak ETags for the server-rendered pages. A page is identified by the user data
+ * version plus everything else it renders from: principal, authorities, query string
+ * and the CSRF token embedded in its forms. The instance id keeps ETags issued by
+ * another node (with its own counter) from ever matching here.
+ */
+@Component
+public class PageETags {
+
+    private static final String INSTANCE = UUID.randomUUID().toString();
+
+    private final UserService userService;
+
+    @Autowired
+    public PageETags(UserService userService) {
+        this.userService = userService;
+    }
+
+    /**
+     * Sets the ETag and returns {@code true} if the client's copy is current; the
+     * response is then a 304 and the caller must not render anything.
+     */
+    public boolean checkNotModified(HttpServletRequest request, HttpServletResponse response,
+                                    Authentication authentication) {
+        long version = userService.getDataVersion();
+
+        StringBuilder key = new StringBuilder(INSTANCE).append('|').append(request.getRequestURI());
+        if (request.getQueryString() != null) {
+            key.append('?').append(request.getQueryString());
+        }
+        if (authentication != null) {
+            key.append('|').append(authentication.getName()).append('|')
+                    .append(authentication.getAuthorities().stream()
+                            .map(GrantedAuthority::getAuthority)
+                            .sorted()
+                            .collect(Collectors.joining(",")));
+        }
+        CsrfToken csrfToken = (CsrfToken) request.getAttribute(CsrfToken.class.getName());
+        if (csrfToken != null) {
+            key.append('|').append(csrfToken.getToken());
+        }
+        String etag = "W/\"" + version + '-'
+                + DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8)) + '"';
+
+        // Must be set before Spring Security's header writer runs, which would otherwise
+        // send no-store and the browser would never revalidate.
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        return new ServletWebRequest(request, response).checkNotModified(etag);
+    }
+}
@@ -0,0 +1,40 @@
+package ru.kata.spring.boot_security.demo.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.kata.spring.boot_security.demo.dto.RoleDto;
+import ru.kata.spring.boot_security.demo.service.RoleService;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/roles")
+public class RoleApiController {
+
+    private RoleService roleService;
+    private ApiJsonWriters jsonWriters;
+
+    @Autowired
+    public void setRoleService(RoleService roleService) {
+        this.roleService = roleService;
+    }
+
+    @Autowired
+    public void setJsonWriters(ApiJsonWriters jsonWriters) {
+        this.jsonWriters = jsonWriters;
+    }
+
+    // Served from the role registry, no query
+    @GetMapping
+    public void getRoles(HttpServletResponse response) throws IOException {
+        List<RoleDto> roles = roleService.getAllRoles().stream()
+                .map(RoleDto::of)
+                .collect(Collectors.toList());
+        UserApiController.write(response, jsonWriters.roles(), roles);
+    }
+}
@@ -0,0 +1,116 @@
+package ru.kata.spring.boot_security.demo.controllers;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import ru.kata.spring.boot_security.demo.dto.KeysetPage;
+import ru.kata.spring.boot_security.demo.dto.UserDto;
+import ru.kata.spring.boot_security.demo.dto.UserPatch;
+import ru.kata.spring.boot_security.demo.dto.UserSearchPage;
+import ru.kata.spring.boot_security.demo.dto.UserSort;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.Valid;
+import java.io.IOException;
+
+/**
+ * JSON view of users for integrations. Responses are flat DTOs read with constructor
+ * expressions; pages use the same keyset cursors as the admin page. The only write is
+ * a versioned partial update.
+ */
+@RestController
+@RequestMapping("/api/users")
+public class UserApiController {
+
+    private UserService userService;
+    private ApiJsonWriters jsonWriters;
+
+    @Value("${app.api.page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${app.api.max-page-size:500}")
+    private int maxPageSize;
+
+    @Autowired
+    public void setUserService(UserService userService) {
+        this.userService = userService;
+    }
+
+    @Autowired
+    public void setJsonWriters(ApiJsonWriters jsonWriters) {
+        this.jsonWriters = jsonWriters;
+    }
+
+    @GetMapping
+    public void getUsers(@RequestParam(value = "sort", required = false) String sort,
+                         @RequestParam(value = "after", required = false) String after,
+                         @RequestParam(value = "before", required = false) String before,
+                         @RequestParam(value = "size", required = false) Integer size,
+                         @RequestParam(value = "fields", required = false) String fields,
+                         HttpServletResponse response) throws IOException {
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        KeysetPage<UserDto> page = userService.getUserDtoPage(UserSort.fromParam(sort), after, before, pageSize);
+        write(response, jsonWriters.users(fields), page);
+    }
+
+    @GetMapping("/search")
+    public void searchUsers(@RequestParam("q") String query,
+                            @RequestParam(value = "page", defaultValue = "0") int page,
+                            @RequestParam(value = "size", required = false) Integer size,
+                            @RequestParam(value = "fields", required = false) String fields,
+                            HttpServletResponse response) throws IOException {
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        UserSearchPage result = userService.searchUsers(query, Math.max(0, page), pageSize);
+        write(response, jsonWriters.users(fields), result);
+    }
+
+    @GetMapping("/{id}")
+    public void getUser(@PathVariable("id") int id,
+                        @RequestParam(value = "fields", required = false) String fields,
+                        HttpServletResponse response) throws IOException {
+        UserDto user = userService.getUserDto(id);
+        if (user == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found: " + id);
+        }
+        write(response, jsonWriters.users(fields), user);
+    }
+
+    /**
+     * Partial update: only the fields present in the body change, and only if
+     * {@code version} is still the current one (409 otherwise, with the current user in
+     * the body so the client can reapply its change).
+     */
+    @PatchMapping(value = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void patchUser(@PathVariable("id") int id,
+                          @Valid @RequestBody UserPatch patch,
+                          @RequestParam(value = "fields", required = false) String fields,
+                          HttpServletResponse response) throws IOException {
+        UserDto user;
+        try {
+            user = userService.patch(id, patch);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            response.setStatus(HttpStatus.CONFLICT.value());
+            write(response, jsonWriters.users(fields), userService.getUserDto(id));
+            return;
+        } catch (DataIntegrityViolationException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Username is already taken", e);
+        }
+        if (user == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found: " + id);
+        }
+        write(response, jsonWriters.users(fields), user);
+    }
+
+    static void write(HttpServletResponse response, ObjectWriter writer, Object value) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        writer.writeValue(response.getOutputStream(), value);
+    }
+}
@@ -1,18 +1,50 @@
 package ru.kata.spring.boot_security.demo.controllers;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.security.UserPrincipal;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 @Controller
 @RequestMapping("/user")
 public class UserController {
 
+    private PageETags pageETags;
+    private UserService userService;
+
+    @Autowired
+    public void setPageETags(PageETags pageETags) {
+        this.pageETags = pageETags;
+    }
+
+    @Autowired
+    public void setUserService(UserService userService) {
+        this.userService = userService;
+    }
+
     @GetMapping
-    public String userPage(@AuthenticationPrincipal User user, Model model) {
+    public String userPage(@AuthenticationPrincipal UserPrincipal principal, Model model,
+                           Authentication authentication,
+                           HttpServletRequest request,
+                           HttpServletResponse response) {
+        if (pageETags.checkNotModified(request, response, authentication)) {
+            return null;
+        }
+        // The principal only carries id, username and roles; the profile comes from the
+        // second-level cache
+        User user = userService.getUserByIdWithRoles(principal.getId());
+        if (user == null) {
+            return "redirect:/login";
+        }
         model.addAttribute("user", user);
         return "user/index";
     }
@@ -0,0 +1,13 @@
+package ru.kata.spring.boot_security.demo.dao;
+
+import ru.kata.spring.boot_security.demo.model.AuditEntry;
+
+import java.util.List;
+
+public interface AuditDAO {
+
+    /** Appends all entries with one JDBC batch. */
+    void saveAll(List<AuditEntry> entries);
+
+    List<AuditEntry> getEntriesForEntity(String actionPrefix, long entityId);
+}
@@ -0,0 +1,60 @@
+package ru.kata.spring.boot_security.demo.dao;
+
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Repository;
+import ru.kata.spring.boot_security.demo.model.AuditEntry;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+@Repository
+public class AuditDAOImpl implements AuditDAO {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditDAOImpl.class);
+
+    // Shared, transaction-bound proxy, see UserDAOImpl.
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public void saveAll(List<AuditEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO audit_log (occurred_at, actor, action, entity_id, details) VALUES (?, ?, ?, ?, ?)")) {
+                for (AuditEntry entry : entries) {
+                    ps.setTimestamp(1, Timestamp.from(entry.getOccurredAt()));
+                    ps.setString(2, entry.getActor());
+                    ps.setString(3, entry.getAction());
+                    if (entry.getEntityId() == null) {
+                        ps.setNull(4, Types.BIGINT);
+                    } else {
+                        ps.setLong(4, entry.getEntityId());
+                    }
+                    ps.setString(5, entry.getDetails());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        });
+        logger.debug("Wrote {} audit entries", entries.size());
+    }
+
+    @Override
+    public List<AuditEntry> getEntriesForEntity(String actionPrefix, long entityId) {
+        return em.createQuery(
+                        "SELECT a FROM AuditEntry a WHERE a.action LIKE :prefix AND a.entityId = :id ORDER BY a.id",
+                        AuditEntry.class)
+                .setParameter("prefix", actionPrefix + "%")
+                .setParameter("id", entityId)
+                .getResultList();
+    }
+}
@@ -1,6 +1,7 @@
 package ru.kata.spring.boot_security.demo.dao;
 
 import ru.kata.spring.boot_security.demo.model.Role;
+import java.util.Collection;
 import java.util.List;
 
 public interface RoleDAO {
@@ -9,6 +10,9 @@ public interface RoleDAO {
     Role getRoleById(Long id);
     Role getRoleByName(String name);
 
+    List<Role> getRolesByIds(Collection<Long> ids);
+    List<Role> getRolesByNames(Collection<String> names);
+
     void save(Role role);
     void update(Role role);
     void delete(Long id);
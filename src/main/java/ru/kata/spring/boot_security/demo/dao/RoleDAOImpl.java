@@ -1,12 +1,12 @@
 package ru.kata.spring.boot_security.demo.dao;
 
 import ru.kata.spring.boot_security.demo.model.Role;
+import org.hibernate.jpa.QueryHints;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.stereotype.Repository;
 import javax.persistence.*;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,15 +14,10 @@ public class RoleDAOImpl implements RoleDAO {
 
     private static final Logger logger = LoggerFactory.getLogger(RoleDAOImpl.class);
 
+    // Shared, transaction-bound proxy, see UserDAOImpl.
     @PersistenceContext
     private EntityManager em;
 
-    @Autowired
-    public RoleDAOImpl(LocalContainerEntityManagerFactoryBean lcemfb) {
-        EntityManagerFactory emf = lcemfb.getObject();
-        em = emf.createEntityManager();
-    }
-
     @Override
     public List<Role> getAllRoles() {
         TypedQuery<Role> q = em.createQuery("SELECT r FROM Role r ORDER BY r.id", Role.class);
@@ -47,6 +42,8 @@ public class RoleDAOImpl implements RoleDAO {
             TypedQuery<Role> q = em.createQuery(
                     "SELECT r FROM Role r WHERE r.name = :name", Role.class);
             q.setParameter("name", name);
+            q.setHint(QueryHints.HINT_CACHEABLE, true);
+            q.setHint(QueryHints.HINT_CACHE_REGION, "query.roles");
             role = q.getSingleResult();
         } catch (NoResultException e) {
             logger.debug("Role with name '{}' not found", name);
@@ -56,6 +53,20 @@ public class RoleDAOImpl implements RoleDAO {
         return role;
     }
 
+    @Override
+    public List<Role> getRolesByIds(Collection<Long> ids) {
+        return em.createQuery("SELECT r FROM Role r WHERE r.id IN :ids", Role.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    @Override
+    public List<Role> getRolesByNames(Collection<String> names) {
+        return em.createQuery("SELECT r FROM Role r WHERE r.name IN :names", Role.class)
+                .setParameter("names", names)
+                .getResultList();
+    }
+
     @Override
     public void save(Role role) {
         try {
@@ -1,18 +1,59 @@
 package ru.kata.spring.boot_security.demo.dao;
 
+import ru.kata.spring.boot_security.demo.dto.UserDto;
+import ru.kata.spring.boot_security.demo.dto.UserSort;
 import ru.kata.spring.boot_security.demo.model.User;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface UserDAO {
 
     List<User> getAllUsers();
     User getUser(int userID);
 
+    // Keyset pagination: rows strictly after/before the cursor, nearest first.
+    List<User> getUsersAfterId(int afterId, int limit);
+    List<User> getUsersBeforeId(int beforeId, int limit);
+    List<User> getUsersAfterUsername(String afterUsername, int limit);
+    List<User> getUsersBeforeUsername(String beforeUsername, int limit);
+
     void save(User user);
     void update(User user);
+    void updatePassword(int id, String encodedPassword);
+
+    Set<Long> getRoleIds(int userId);
+    /** Inserts/deletes only the given users_roles rows, each set as one JDBC batch. */
+    void addRoles(int userId, Collection<Long> roleIds);
+    void removeRoles(int userId, Collection<Long> roleIds);
     void delete(int id);
 
+    /** Ids and usernames of those of {@code ids} that exist. */
+    Map<Integer, String> getUsernamesByIds(Collection<Integer> ids);
+    /** Those of {@code userIds} that currently have the role. */
+    Set<Integer> getUserIdsWithRole(Collection<Integer> userIds, long roleId);
+    /**
+     * Deletes the users and their users_roles rows with one statement per table; the
+     * caller keeps {@code ids} small enough for one IN list. Returns the users deleted.
+     */
+    int deleteUsers(Collection<Integer> ids);
+    /** Adds the role to every user as one JDBC batch; users that already have it are skipped. */
+    void addRoleToUsers(Collection<Integer> userIds, long roleId);
+    /** Removes the role from the users with one statement; returns the rows removed. */
+    int removeRoleFromUsers(Collection<Integer> userIds, long roleId);
+    /**
+     * Bumps the version of the users whose roles were changed with the statements above,
+     * which Hibernate does not see, so a form or patch read before the change is refused.
+     */
+    void incrementVersions(Collection<Integer> userIds);
+
+    /**
+     * Inserts all users and their role links with one JDBC batch per table and sets
+     * the generated ids on the given objects. Roles must already exist.
+     */
     void saveUsers(List<User> list);
     void deleteAllUsers();
 
@@ -21,7 +62,34 @@ public interface UserDAO {
     User getUserByIdWithRoles(int id);
     List<User> getAllUsersWithRoles();
 
+    /**
+     * Passes every user, ordered by id, to {@code consumer} while scrolling a forward-only
+     * cursor. No entities are loaded, so memory use is independent of the table size.
+     */
+    void scrollUsersWithRoleNames(int fetchSize, Consumer<UserDto> consumer);
+
+    /**
+     * Users as {@link UserDto}s (without roles) ordered by the sort key, starting after
+     * the cursor, or before it going backwards. {@code null} cursor means from the start.
+     */
+    List<UserDto> getUserDtos(UserSort sort, String cursor, boolean backwards, int limit);
+    UserDto getUserDto(int id);
+    /** Users with the given ids, in the order of {@code ids}; unknown ids are skipped. */
+    List<UserDto> getUserDtosByIds(List<Integer> ids);
+    /**
+     * Users matching every term: the username, name or email starts with it, or a word of
+     * the name does (case as the collation compares). Ordered by username. The search
+     * falls back to it while the in-memory index is loading, which starts only after the
+     * web server did.
+     */
+    List<UserDto> searchUserDtosByTerms(List<String> terms, int offset, int limit);
+    /** Adds the role names to the given users with one query. */
+    void fillRoleNames(List<UserDto> users);
+
     boolean existsByUsername(String username);
+    Integer getUserIdByUsername(String username);
+    void scrollUsernames(int fetchSize, Consumer<String> consumer);
+    Set<String> getExistingUsernames(Collection<String> usernames);
 
 
 
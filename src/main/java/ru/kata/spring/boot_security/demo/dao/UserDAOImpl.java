@@ -1,35 +1,92 @@
 package ru.kata.spring.boot_security.demo.dao;
 
+import org.hibernate.Hibernate;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.jpa.QueryHints;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.kata.spring.boot_security.demo.dto.UserDto;
+import ru.kata.spring.boot_security.demo.dto.UserSort;
+import ru.kata.spring.boot_security.demo.model.Role;
 import ru.kata.spring.boot_security.demo.model.User;
 
 import javax.persistence.*;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Repository
 public class UserDAOImpl implements UserDAO {
 
     private static final Logger logger = LoggerFactory.getLogger(UserDAOImpl.class);
 
+    private static final String QUERY_REGION = "query.users";
+    private static final String ROLES_COLLECTION = User.class.getName() + ".roles";
+
+    private static final String USER_DTO_SELECT = "SELECT new ru.kata.spring.boot_security.demo.dto.UserDto("
+            + "u.id, u.username, u.name, u.age, u.email, u.version) FROM User u";
+
+    // Shared, transaction-bound proxy: each transaction (and so each request thread)
+    // gets its own persistence context, closed together with the transaction.
     @PersistenceContext
     private EntityManager em;
 
-    @Autowired
-    public UserDAOImpl(LocalContainerEntityManagerFactoryBean lcemfb) {
-        EntityManagerFactory emf = lcemfb.getObject();
-        em = emf.createEntityManager();
-    }
-
     @Override
     public List<User> getAllUsers() {
         TypedQuery<User> q = em.createQuery("SELECT u FROM User u ORDER BY u.id", User.class);
         return q.getResultList();
     }
 
+    @Override
+    public List<User> getUsersAfterId(int afterId, int limit) {
+        return em.createQuery("SELECT u FROM User u WHERE u.id > :id ORDER BY u.id", User.class)
+                .setParameter("id", afterId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public List<User> getUsersBeforeId(int beforeId, int limit) {
+        return em.createQuery("SELECT u FROM User u WHERE u.id < :id ORDER BY u.id DESC", User.class)
+                .setParameter("id", beforeId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public List<User> getUsersAfterUsername(String afterUsername, int limit) {
+        return em.createQuery(
+                        "SELECT u FROM User u WHERE u.username > :username ORDER BY u.username", User.class)
+                .setParameter("username", afterUsername)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public List<User> getUsersBeforeUsername(String beforeUsername, int limit) {
+        return em.createQuery(
+                        "SELECT u FROM User u WHERE u.username < :username ORDER BY u.username DESC", User.class)
+                .setParameter("username", beforeUsername)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
     @Override
     public User getUser(int userID) {
         User userToFind = new User();
@@ -64,14 +121,123 @@ public class UserDAOImpl implements UserDAO {
     }
 
     @Override
-    public void saveUsers(List<User> list) {
+    public void updatePassword(int id, String encodedPassword) {
         try {
-            for (User user : list) {
-                em.persist(user);
+            em.createQuery("UPDATE User u SET u.password = :password WHERE u.id = :id")
+                    .setParameter("password", encodedPassword)
+                    .setParameter("id", id)
+                    .executeUpdate();
+            logger.info("Password updated for user with id={}", id);
+        } catch (PersistenceException e) {
+            // Not swallowed: a failed rehash on login must not look like a done one
+            logger.error("Failed to update password for user with id={}", id, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Set<Long> getRoleIds(int userId) {
+        return new HashSet<>(em.createQuery(
+                        "SELECT r.id FROM User u JOIN u.roles r WHERE u.id = :id", Long.class)
+                .setParameter("id", userId)
+                .getResultList());
+    }
+
+    @Override
+    public void addRoles(int userId, Collection<Long> roleIds) {
+        batchUserRoles("INSERT INTO users_roles (user_id, role_id) VALUES (?, ?)", userId, roleIds);
+        logger.info("Added roles {} to user with id={}", roleIds, userId);
+    }
+
+    @Override
+    public void removeRoles(int userId, Collection<Long> roleIds) {
+        batchUserRoles("DELETE FROM users_roles WHERE user_id = ? AND role_id = ?", userId, roleIds);
+        logger.info("Removed roles {} from user with id={}", roleIds, userId);
+    }
+
+    // Merging a changed roles collection makes Hibernate delete and reinsert every join
+    // row; this touches only the rows in the diff. Hibernate does not see these writes,
+    // so the cached collection is evicted now and again after commit, in case another
+    // transaction put the old rows back in between.
+    private void batchUserRoles(String sql, int userId, Collection<Long> roleIds) {
+        if (roleIds.isEmpty()) {
+            return;
+        }
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (Long roleId : roleIds) {
+                    ps.setInt(1, userId);
+                    ps.setLong(2, roleId);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
             }
+        });
+        evictRoles(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictRoles(userId);
+                }
+            });
+        }
+    }
+
+    private void evictRoles(int userId) {
+        em.getEntityManagerFactory().unwrap(SessionFactory.class).getCache()
+                .evictCollectionData(ROLES_COLLECTION, userId);
+    }
+
+    // IDENTITY ids switch off Hibernate's insert batching, so bulk inserts go through
+    // plain JDBC batches on the transaction's connection. With rewriteBatchedStatements
+    // MySQL Connector/J sends each batch as one multi-row INSERT and still returns all keys.
+    @Override
+    public void saveUsers(List<User> list) {
+        if (list.isEmpty()) {
+            return;
+        }
+        try {
+            em.flush();
+            em.unwrap(Session.class).doWork(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "INSERT INTO user (name, age, email, username, password, version) VALUES (?, ?, ?, ?, ?, 0)",
+                        Statement.RETURN_GENERATED_KEYS)) {
+                    for (User user : list) {
+                        ps.setString(1, user.getName());
+                        ps.setInt(2, user.getAge());
+                        ps.setString(3, user.getEmail());
+                        ps.setString(4, user.getUsername());
+                        ps.setString(5, user.getPassword());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        for (int i = 0; i < list.size() && keys.next(); i++) {
+                            list.get(i).setId(keys.getInt(1));
+                        }
+                    }
+                }
+
+                try (PreparedStatement ps = connection.prepareStatement(
+                        "INSERT INTO users_roles (user_id, role_id) VALUES (?, ?)")) {
+                    for (User user : list) {
+                        for (Role role : user.getRoles()) {
+                            ps.setInt(1, user.getId());
+                            ps.setLong(2, role.getId());
+                            ps.addBatch();
+                        }
+                    }
+                    ps.executeBatch();
+                }
+            });
+            em.clear();
+            // Hibernate did not see these inserts, so cached username lookups may be stale
+            em.getEntityManagerFactory().unwrap(SessionFactory.class).getCache().evictQueryRegion(QUERY_REGION);
             logger.info("Saved {} users", list.size());
-        } catch (EntityExistsException e) {
-            logger.error("Some users already exist (same parameters)", e);
+        } catch (PersistenceException e) {
+            logger.error("Failed to save batch of {} users", list.size(), e);
+            throw e;
         }
     }
 
@@ -97,6 +263,166 @@ public class UserDAOImpl implements UserDAO {
         }
     }
 
+    @Override
+    public Map<Integer, String> getUsernamesByIds(Collection<Integer> ids) {
+        Map<Integer, String> usernames = new HashMap<>();
+        if (ids.isEmpty()) {
+            return usernames;
+        }
+        for (Object[] row : em.createQuery(
+                        "SELECT u.id, u.username FROM User u WHERE u.id IN :ids", Object[].class)
+                .setParameter("ids", ids)
+                .getResultList()) {
+            usernames.put((Integer) row[0], (String) row[1]);
+        }
+        return usernames;
+    }
+
+    @Override
+    public Set<Integer> getUserIdsWithRole(Collection<Integer> userIds, long roleId) {
+        if (userIds.isEmpty()) {
+            return new HashSet<>();
+        }
+        return new HashSet<>(em.createQuery(
+                        "SELECT u.id FROM User u JOIN u.roles r WHERE r.id = :roleId AND u.id IN :ids", Integer.class)
+                .setParameter("roleId", roleId)
+                .setParameter("ids", userIds)
+                .getResultList());
+    }
+
+    // Set-based counterparts of delete/addRoles/removeRoles: one statement (or one JDBC
+    // batch) per call, so the caller bounds the IN list. Hibernate does not see these
+    // writes; only the touched ids are evicted, not the whole user region.
+    @Override
+    public int deleteUsers(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        em.flush();
+        String in = placeholders(ids.size());
+        int deleted = em.unwrap(Session.class).doReturningWork(connection -> {
+            // Join rows first: users_roles has a foreign key to user
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "DELETE FROM users_roles WHERE user_id IN (" + in + ")")) {
+                bindIds(ps, 1, ids);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "DELETE FROM user WHERE user_id IN (" + in + ")")) {
+                bindIds(ps, 1, ids);
+                return ps.executeUpdate();
+            }
+        });
+        em.clear();
+        SessionFactory sessionFactory = em.getEntityManagerFactory().unwrap(SessionFactory.class);
+        for (Integer id : ids) {
+            sessionFactory.getCache().evictEntityData(User.class, id);
+            evictRoles(id);
+        }
+        sessionFactory.getCache().evictQueryRegion(QUERY_REGION);
+        logger.info("Deleted {} of {} users", deleted, ids.size());
+        return deleted;
+    }
+
+    // INSERT IGNORE: a row added by a concurrent grant since the caller read the current
+    // holders is skipped instead of failing the whole batch on the primary key.
+    @Override
+    public void addRoleToUsers(Collection<Integer> userIds, long roleId) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT IGNORE INTO users_roles (user_id, role_id) VALUES (?, ?)")) {
+                for (Integer userId : userIds) {
+                    ps.setInt(1, userId);
+                    ps.setLong(2, roleId);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        });
+        afterRoleChange(userIds);
+        logger.info("Granted role id={} to {} users", roleId, userIds.size());
+    }
+
+    @Override
+    public int removeRoleFromUsers(Collection<Integer> userIds, long roleId) {
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        int removed = em.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "DELETE FROM users_roles WHERE role_id = ? AND user_id IN (" + placeholders(userIds.size()) + ")")) {
+                ps.setLong(1, roleId);
+                bindIds(ps, 2, userIds);
+                return ps.executeUpdate();
+            }
+        });
+        afterRoleChange(userIds);
+        logger.info("Revoked role id={} from {} users", roleId, removed);
+        return removed;
+    }
+
+    // Pending entity changes are flushed first, so their UPDATE still checks the version
+    // that was read; the persistence context is cleared as the managed copies are stale.
+    // The cached entities are evicted now and again after commit, as the flushed UPDATE
+    // puts its (older) version back into the cache at completion.
+    @Override
+    public void incrementVersions(Collection<Integer> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        em.flush();
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "UPDATE user SET version = version + 1 WHERE user_id IN (" + placeholders(userIds.size()) + ")")) {
+                bindIds(ps, 1, userIds);
+                ps.executeUpdate();
+            }
+        });
+        em.clear();
+        List<Integer> ids = new ArrayList<>(userIds);
+        evictUsers(ids);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictUsers(ids);
+                }
+            });
+        }
+    }
+
+    private void evictUsers(Collection<Integer> userIds) {
+        SessionFactory sessionFactory = em.getEntityManagerFactory().unwrap(SessionFactory.class);
+        userIds.forEach(id -> sessionFactory.getCache().evictEntityData(User.class, id));
+    }
+
+    private void afterRoleChange(Collection<Integer> userIds) {
+        userIds.forEach(this::evictRoles);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<Integer> ids = new ArrayList<>(userIds);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    ids.forEach(UserDAOImpl.this::evictRoles);
+                }
+            });
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static void bindIds(PreparedStatement ps, int firstIndex, Collection<Integer> ids) throws SQLException {
+        int index = firstIndex;
+        for (Integer id : ids) {
+            ps.setInt(index++, id);
+        }
+    }
+
     @Override
     public User getUserByUsername(String username) {
         User user = null;
@@ -122,7 +448,12 @@ public class UserDAOImpl implements UserDAO {
                     "SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.roles WHERE u.username = :username",
                     User.class);
             q.setParameter("username", username);
+            q.setHint(QueryHints.HINT_CACHEABLE, true);
+            q.setHint(QueryHints.HINT_CACHE_REGION, QUERY_REGION);
             user = q.getSingleResult();
+            // A query cache hit returns only the id; the roles then come from the
+            // user.roles region and must be loaded while the session is still open.
+            Hibernate.initialize(user.getRoles());
             logger.debug("Found user with roles by username: {}", username);
         } catch (NoResultException e) {
             logger.debug("User with username '{}' not found", username);
@@ -165,6 +496,160 @@ public class UserDAOImpl implements UserDAO {
         }
     }
 
+    @Override
+    public void scrollUsersWithRoleNames(int fetchSize, Consumer<UserDto> consumer) {
+        org.hibernate.query.Query<?> query = em.createQuery(
+                        "SELECT u.id, u.username, u.name, u.age, u.email, u.version, r.name " +
+                                "FROM User u LEFT JOIN u.roles r ORDER BY u.id")
+                .unwrap(org.hibernate.query.Query.class)
+                .setFetchSize(fetchSize)
+                .setReadOnly(true);
+
+        long users = 0;
+        try (ScrollableResults rows = query.scroll(ScrollMode.FORWARD_ONLY)) {
+            UserDto current = null;
+            while (rows.next()) {
+                Object[] row = rows.get();
+                int id = (Integer) row[0];
+                if (current == null || current.getId() != id) {
+                    if (current != null) {
+                        consumer.accept(current);
+                        if (++users % fetchSize == 0) {
+                            em.clear();
+                        }
+                    }
+                    current = new UserDto(id, (String) row[1], (String) row[2], (Integer) row[3], (String) row[4],
+                            (Long) row[5]);
+                }
+                if (row[6] != null) {
+                    current.addRole((String) row[6]);
+                }
+            }
+            if (current != null) {
+                consumer.accept(current);
+                users++;
+            }
+        }
+        logger.debug("Scrolled {} users", users);
+    }
+
+    @Override
+    public List<UserDto> getUserDtos(UserSort sort, String cursor, boolean backwards, int limit) {
+        String key = sort == UserSort.USERNAME ? "u.username" : "u.id";
+        StringBuilder jpql = new StringBuilder(USER_DTO_SELECT);
+        if (cursor != null) {
+            jpql.append(" WHERE ").append(key).append(backwards ? " < :cursor" : " > :cursor");
+        }
+        jpql.append(" ORDER BY ").append(key).append(backwards ? " DESC" : "");
+
+        TypedQuery<UserDto> q = em.createQuery(jpql.toString(), UserDto.class).setMaxResults(limit);
+        if (cursor != null) {
+            q.setParameter("cursor", sort == UserSort.USERNAME ? cursor : (Object) Integer.valueOf(cursor));
+        }
+        return q.getResultList();
+    }
+
+    @Override
+    public UserDto getUserDto(int id) {
+        List<UserDto> users = em.createQuery(USER_DTO_SELECT + " WHERE u.id = :id", UserDto.class)
+                .setParameter("id", id)
+                .getResultList();
+        return users.isEmpty() ? null : users.get(0);
+    }
+
+    @Override
+    public List<UserDto> getUserDtosByIds(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Integer, UserDto> byId = new HashMap<>();
+        for (UserDto user : em.createQuery(USER_DTO_SELECT + " WHERE u.id IN :ids", UserDto.class)
+                .setParameter("ids", ids)
+                .getResultList()) {
+            byId.put(user.getId(), user);
+        }
+        List<UserDto> users = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            UserDto user = byId.get(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    @Override
+    public List<UserDto> searchUserDtosByTerms(List<String> terms, int offset, int limit) {
+        StringBuilder jpql = new StringBuilder(USER_DTO_SELECT).append(" WHERE 1 = 1");
+        for (int i = 0; i < terms.size(); i++) {
+            jpql.append(" AND (u.username LIKE :p").append(i).append(" ESCAPE '\\'")
+                    .append(" OR u.name LIKE :p").append(i).append(" ESCAPE '\\'")
+                    .append(" OR u.name LIKE :w").append(i).append(" ESCAPE '\\'")
+                    .append(" OR u.email LIKE :p").append(i).append(" ESCAPE '\\'").append(')');
+        }
+        TypedQuery<UserDto> query = em.createQuery(jpql.append(" ORDER BY u.username").toString(), UserDto.class);
+        for (int i = 0; i < terms.size(); i++) {
+            String escaped = terms.get(i).replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+            query.setParameter("p" + i, escaped + "%");
+            query.setParameter("w" + i, "% " + escaped + "%");
+        }
+        return query.setFirstResult(offset)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public void fillRoleNames(List<UserDto> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        Map<Integer, UserDto> byId = new HashMap<>();
+        for (UserDto user : users) {
+            byId.put(user.getId(), user);
+        }
+        List<Object[]> rows = em.createQuery(
+                        "SELECT u.id, r.name FROM User u JOIN u.roles r WHERE u.id IN :ids ORDER BY r.id",
+                        Object[].class)
+                .setParameter("ids", byId.keySet())
+                .getResultList();
+        for (Object[] row : rows) {
+            byId.get((Integer) row[0]).addRole((String) row[1]);
+        }
+    }
+
+    @Override
+    public Integer getUserIdByUsername(String username) {
+        List<Integer> ids = em.createQuery("SELECT u.id FROM User u WHERE u.username = :username", Integer.class)
+                .setParameter("username", username)
+                .getResultList();
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    @Override
+    public void scrollUsernames(int fetchSize, Consumer<String> consumer) {
+        org.hibernate.query.Query<?> query = em.createQuery("SELECT u.username FROM User u")
+                .unwrap(org.hibernate.query.Query.class)
+                .setFetchSize(fetchSize)
+                .setReadOnly(true);
+        try (ScrollableResults rows = query.scroll(ScrollMode.FORWARD_ONLY)) {
+            while (rows.next()) {
+                consumer.accept((String) rows.get(0));
+            }
+        }
+    }
+
+    @Override
+    public Set<String> getExistingUsernames(Collection<String> usernames) {
+        if (usernames.isEmpty()) {
+            return new HashSet<>();
+        }
+        return new HashSet<>(em.createQuery(
+                        "SELECT u.username FROM User u WHERE u.username IN :usernames", String.class)
+                .setParameter("usernames", usernames)
+                .getResultList());
+    }
+
+    @Override
     public boolean existsByUsername(String username) {
         try {
             Long count = em.createQuery(
@@ -0,0 +1,20 @@
+package ru.kata.spring.boot_security.demo.datasource;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Read-only methods whose result outlives the transaction by far (the principal kept
+ * by the user cache on login, the entity an edit form takes its version from, the
+ * in-memory indexes built at startup) read from the primary even when replicas are
+ * configured, so they never keep data a lagging replica has not caught up with yet.
+ * Has no effect without replicas.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReadFromPrimary {
+}
@@ -0,0 +1,26 @@
+package ru.kata.spring.boot_security.demo.datasource;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+/**
+ * Applies {@link ReadFromPrimary}. Runs outside the transaction interceptor, so the
+ * transaction already starts as a primary one. Registered by DataSourceConfig only.
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ReadFromPrimaryAspect {
+
+    @Around("@annotation(ru.kata.spring.boot_security.demo.datasource.ReadFromPrimary)")
+    public Object readFromPrimary(ProceedingJoinPoint joinPoint) throws Throwable {
+        boolean nested = ReadWriteRoutingDataSource.beginPrimaryReads();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReadWriteRoutingDataSource.endPrimaryReads(nested);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package ru.kata.spring.boot_security.demo.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends connections for {@code @Transactional(readOnly = true)} work to the replicas
+ * (round-robin over the ones that passed the last health check) and everything else to
+ * the primary. Must sit behind a LazyConnectionDataSourceProxy: the read-only flag of
+ * the transaction is only known after the transaction manager asked for a connection.
+ * <p>
+ * Within an HTTP request tracked by {@link ReadYourWritesFilter}, reads go to the primary
+ * once the request (or a recent one in the same session) has written, so a redirect
+ * after a save does not show replica data that is still behind. Methods annotated with
+ * {@link ReadFromPrimary} always read from the primary.
+ * <p>
+ * A replica that cannot hand out a connection within the pool's (short) connection
+ * timeout is marked unhealthy on the spot and the read goes to the primary.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+
+    static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<RequestState> requestState = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> primaryReads = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final ScheduledExecutorService healthChecker;
+    private final AtomicLong primaryConnections = new AtomicLong();
+    private final AtomicLong replicaConnections = new AtomicLong();
+
+    public ReadWriteRoutingDataSource(DataSource primary, Map<String, DataSource> replicaDataSources,
+                                      Duration healthCheckInterval) {
+        this.primary = primary;
+        Map<Object, Object> targets = new HashMap<>(replicaDataSources);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        // Lenient fallback would quietly send unknown keys to the primary; keys are ours only.
+        setLenientFallback(false);
+        afterPropertiesSet();
+
+        replicaDataSources.forEach((name, dataSource) -> replicas.add(new Replica(name, dataSource)));
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkReplicas, 0,
+                healthCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+        logger.info("Read/write routing: replicas={}, healthCheckInterval={}",
+                replicaDataSources.keySet(), healthCheckInterval);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Replica replica = route();
+        return replica == null ? PRIMARY : replica.name;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = route();
+        if (replica != null) {
+            try {
+                return replica.dataSource.getConnection();
+            } catch (SQLException e) {
+                // Waiting for the next health check would fail every read routed there until then
+                markUnhealthy(replica, e);
+                replicaConnections.decrementAndGet();
+                primaryConnections.incrementAndGet();
+            }
+        }
+        return primary.getConnection();
+    }
+
+    /** The replica for the current transaction, or {@code null} for the primary. */
+    private Replica route() {
+        RequestState state = requestState.get();
+        boolean inTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+        boolean readOnly = inTransaction && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+
+        if (readOnly && readsMayUseReplica(state)) {
+            Replica replica = nextHealthyReplica();
+            if (replica != null) {
+                replicaConnections.incrementAndGet();
+                return replica;
+            }
+        } else if (inTransaction && !readOnly && state != null) {
+            state.wrote = true;
+        }
+        primaryConnections.incrementAndGet();
+        return null;
+    }
+
+    private static boolean readsMayUseReplica(RequestState state) {
+        return primaryReads.get() == null && (state == null || !state.primaryOnly());
+    }
+
+    /**
+     * Whether a read-only transaction started now on this thread would read from a
+     * replica (see ReplicaReadJpaDialect).
+     */
+    public boolean routesReadsToReplica() {
+        return readsMayUseReplica(requestState.get()) && getHealthyReplicaCount() > 0;
+    }
+
+    private Replica nextHealthyReplica() {
+        int size = replicas.size();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    /** Opens one connection to every replica; failing replicas are skipped until they pass again. */
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            try (Connection connection = replica.dataSource.getConnection()) {
+                healthy = connection.isValid(2);
+            } catch (SQLException | RuntimeException e) {
+                healthy = false;
+                logger.debug("Health check of replica {} failed: {}", replica.name, e.getMessage());
+            }
+            if (healthy != replica.healthy) {
+                if (healthy) {
+                    logger.info("Replica {} is back, routing read-only transactions to it", replica.name);
+                } else {
+                    logger.warn("Replica {} failed its health check, reads go elsewhere", replica.name);
+                }
+                replica.healthy = healthy;
+            }
+        }
+    }
+
+    private void markUnhealthy(Replica replica, SQLException e) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            logger.warn("Replica {} refused a connection, reads go elsewhere until it passes a health check: {}",
+                    replica.name, e.getMessage());
+        }
+    }
+
+    public Map<String, DataSource> getReplicaDataSources() {
+        Map<String, DataSource> dataSources = new LinkedHashMap<>();
+        replicas.forEach(replica -> dataSources.put(replica.name, replica.dataSource));
+        return dataSources;
+    }
+
+    public int getHealthyReplicaCount() {
+        return (int) replicas.stream().filter(replica -> replica.healthy).count();
+    }
+
+    public long getPrimaryConnectionCount() {
+        return primaryConnections.get();
+    }
+
+    public long getReplicaConnectionCount() {
+        return replicaConnections.get();
+    }
+
+    /**
+     * Stops the health checks and closes the replica pools, which belong to this data
+     * source (DataSourceConfig creates them inline, not as beans). The primary is a bean
+     * of its own and is closed by the context.
+     */
+    @Override
+    public void destroy() {
+        healthChecker.shutdownNow();
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) replica.dataSource).close();
+                } catch (Exception e) {
+                    logger.warn("Failed to close replica {}", replica.name, e);
+                }
+            }
+        }
+    }
+
+    /** Starts tracking writes on this thread; reads go to the primary from the start if pinned. */
+    static void beginRequest(boolean pinnedToPrimary) {
+        RequestState state = new RequestState();
+        state.pinned = pinnedToPrimary;
+        requestState.set(state);
+    }
+
+    /**
+     * Sends read-only transactions on this thread to the primary until
+     * {@link #endPrimaryReads(boolean)}; returns whether that was already the case.
+     */
+    static boolean beginPrimaryReads() {
+        boolean nested = primaryReads.get() != null;
+        primaryReads.set(Boolean.TRUE);
+        return nested;
+    }
+
+    static void endPrimaryReads(boolean nested) {
+        if (!nested) {
+            primaryReads.remove();
+        }
+    }
+
+    /** Stops tracking and tells whether the request ran a read-write transaction. */
+    static boolean endRequest() {
+        RequestState state = requestState.get();
+        requestState.remove();
+        return state != null && state.wrote;
+    }
+
+    private static final class RequestState {
+
+        private boolean pinned;
+        private boolean wrote;
+
+        private boolean primaryOnly() {
+            return pinned || wrote;
+        }
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy = true;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ru.kata.spring.boot_security.demo.datasource;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Keeps a session on the primary for a short window after it wrote something, so the
+ * page it is redirected to is not read from a replica that has not caught up yet.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String PRIMARY_UNTIL = ReadYourWritesFilter.class.getName() + ".PRIMARY_UNTIL";
+
+    private final long windowMillis;
+
+    public ReadYourWritesFilter(Duration window) {
+        this.windowMillis = window.toMillis();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        HttpSession session = request.getSession(false);
+        Object primaryUntil = session == null ? null : session.getAttribute(PRIMARY_UNTIL);
+        boolean pinned = primaryUntil instanceof Long && (Long) primaryUntil > System.currentTimeMillis();
+
+        ReadWriteRoutingDataSource.beginRequest(pinned);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            boolean wrote = ReadWriteRoutingDataSource.endRequest();
+            if (wrote) {
+                session = request.getSession(false);
+                if (session != null) {
+                    session.setAttribute(PRIMARY_UNTIL, System.currentTimeMillis() + windowMillis);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ru.kata.spring.boot_security.demo.datasource;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.sql.SQLException;
+
+/**
+ * Read-only transactions that go to a replica may read from the second-level and query
+ * caches but do not put into them: the after-commit evictions of a write would otherwise
+ * be undone by a read from a replica that is still behind, and the stale entry kept for
+ * the whole cache TTL instead of the replication lag. Reads on the primary fill the
+ * caches as before.
+ */
+public class ReplicaReadJpaDialect extends HibernateJpaDialect {
+
+    private final ObjectProvider<ReadWriteRoutingDataSource> routingDataSource;
+
+    public ReplicaReadJpaDialect(ObjectProvider<ReadWriteRoutingDataSource> routingDataSource) {
+        this.routingDataSource = routingDataSource;
+    }
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+            throws PersistenceException, SQLException {
+        Object transactionData = super.beginTransaction(entityManager, definition);
+        if (!definition.isReadOnly() || !routingDataSource.getObject().routesReadsToReplica()) {
+            return transactionData;
+        }
+        // The session may outlive the transaction (open-in-view), so the mode is put back
+        Session session = entityManager.unwrap(Session.class);
+        CacheMode previous = session.getCacheMode();
+        session.setCacheMode(CacheMode.GET);
+        return new ReplicaReadData(transactionData, session, previous);
+    }
+
+    @Override
+    public void cleanupTransaction(Object transactionData) {
+        if (transactionData instanceof ReplicaReadData) {
+            ReplicaReadData data = (ReplicaReadData) transactionData;
+            data.session.setCacheMode(data.previousCacheMode);
+            super.cleanupTransaction(data.transactionData);
+        } else {
+            super.cleanupTransaction(transactionData);
+        }
+    }
+
+    private static final class ReplicaReadData {
+
+        private final Object transactionData;
+        private final Session session;
+        private final CacheMode previousCacheMode;
+
+        private ReplicaReadData(Object transactionData, Session session, CacheMode previousCacheMode) {
+            this.transactionData = transactionData;
+            this.session = session;
+            this.previousCacheMode = previousCacheMode;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome of a bulk user operation: one entry per requested id, in request order.
+ */
+public class BulkResult {
+
+    public enum Outcome {
+        DELETED, GRANTED, REVOKED,
+        /** The user exists but already was in the requested state. */
+        UNCHANGED,
+        NOT_FOUND,
+        /** Left alone on purpose (the signed-in admin deleting themselves). */
+        SKIPPED,
+        /** Its chunk failed and was rolled back. */
+        FAILED
+    }
+
+    private final String action;
+    private final Map<Integer, Outcome> results = new LinkedHashMap<>();
+    private long elapsedMillis;
+
+    public BulkResult(String action) {
+        this.action = action;
+    }
+
+    public void set(int id, Outcome outcome) {
+        results.put(id, outcome);
+    }
+
+    public Outcome get(int id) {
+        return results.get(id);
+    }
+
+    public void finish(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public Map<Integer, Outcome> getResults() {
+        return results;
+    }
+
+    public Map<Outcome, Integer> getCounts() {
+        Map<Outcome, Integer> counts = new EnumMap<>(Outcome.class);
+        results.values().forEach(outcome -> counts.merge(outcome, 1, Integer::sum));
+        return counts;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
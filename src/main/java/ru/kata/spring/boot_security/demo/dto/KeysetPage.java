@@ -0,0 +1,63 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import java.util.List;
+
+/**
+ * One page of a keyset (seek) paginated listing. Instead of page numbers it carries
+ * the sort keys of its first and last rows, which the previous/next links pass back
+ * as "before"/"after" cursors.
+ */
+public class KeysetPage<T> {
+
+    private final List<T> content;
+    private final UserSort sort;
+    private final int size;
+    private final boolean hasPrevious;
+    private final boolean hasNext;
+    private final String previousCursor;
+    private final String nextCursor;
+
+    public KeysetPage(List<T> content, UserSort sort, int size,
+                      boolean hasPrevious, boolean hasNext,
+                      String previousCursor, String nextCursor) {
+        this.content = content;
+        this.sort = sort;
+        this.size = size;
+        this.hasPrevious = hasPrevious;
+        this.hasNext = hasNext;
+        this.previousCursor = previousCursor;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public UserSort getSort() {
+        return sort;
+    }
+
+    public String getSortParam() {
+        return sort.toParam();
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isHasPrevious() {
+        return hasPrevious;
+    }
+
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    public String getPreviousCursor() {
+        return previousCursor;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
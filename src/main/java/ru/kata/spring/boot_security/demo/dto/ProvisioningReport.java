@@ -0,0 +1,90 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk user import: counters, throughput and the rows that were not imported.
+ */
+public class ProvisioningReport {
+
+    public static class RejectedRow {
+
+        private final long line;
+        private final String username;
+        private final String reason;
+
+        public RejectedRow(long line, String username, String reason) {
+            this.line = line;
+            this.username = username;
+            this.reason = reason;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+    }
+
+    private final int maxReportedRejections;
+    private final List<RejectedRow> rejected = new ArrayList<>();
+    private long totalRows;
+    private long importedRows;
+    private long rejectedRows;
+    private long elapsedMillis;
+
+    public ProvisioningReport(int maxReportedRejections) {
+        this.maxReportedRejections = maxReportedRejections;
+    }
+
+    public void rowRead() {
+        totalRows++;
+    }
+
+    public void imported(int rows) {
+        importedRows += rows;
+    }
+
+    public void reject(long line, String username, String reason) {
+        rejectedRows++;
+        if (rejected.size() < maxReportedRejections) {
+            rejected.add(new RejectedRow(line, username, reason));
+        }
+    }
+
+    public void finish(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public long getImportedRows() {
+        return importedRows;
+    }
+
+    public long getRejectedRows() {
+        return rejectedRows;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? importedRows : importedRows * 1000.0 / elapsedMillis;
+    }
+
+    /** First rejected rows, at most app.provisioning.max-reported-rejections of them. */
+    public List<RejectedRow> getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,27 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import ru.kata.spring.boot_security.demo.model.Role;
+
+/** Flat view of a role for the REST API. */
+public class RoleDto {
+
+    private final Long id;
+    private final String name;
+
+    public RoleDto(Long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public static RoleDto of(Role role) {
+        return new RoleDto(role.getId(), role.getName());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,70 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flat, read-only view of a user and the names of its roles. Built from scalar
+ * query columns, never from a managed entity, so it carries no password hash
+ * and no lazy proxies.
+ */
+public class UserDto {
+
+    private final int id;
+    private final String username;
+    private final String name;
+    private final int age;
+    private final String email;
+    private final long version;
+    private final List<String> roles = new ArrayList<>();
+
+    public UserDto(int id, String username, String name, int age, String email, long version) {
+        this.id = id;
+        this.username = username;
+        this.name = name;
+        this.age = age;
+        this.email = email;
+        this.version = version;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    /** Optimistic lock version; send it back with an update (PATCH /api/users/{id}). */
+    public long getVersion() {
+        return version;
+    }
+
+    public List<String> getRoles() {
+        return roles;
+    }
+
+    public void addRole(String role) {
+        roles.add(role);
+    }
+
+    /** Role names joined with ",", as the admin page's edit/delete buttons expect. */
+    @JsonIgnore
+    public String getRolesAsString() {
+        return String.join(",", roles);
+    }
+}
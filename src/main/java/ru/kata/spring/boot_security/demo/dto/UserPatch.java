@@ -0,0 +1,81 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import javax.validation.constraints.Email;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+/**
+ * Body of {@code PATCH /api/users/{id}}: every field except {@code version} is optional
+ * and {@code null} means "leave as is". {@code version} is the one the client read; the
+ * update is refused if the user has been changed since.
+ */
+public class UserPatch {
+
+    @Size(min = 2, max = 30, message = "Name sholud be 2-30 characters")
+    private String name;
+
+    @Min(value = 0, message = "Age should not be negative")
+    @Max(value = 100, message = "Are you really more than 100 years old?")
+    private Integer age;
+
+    @Email(message = "Email should be valid")
+    private String email;
+
+    @Size(min = 1, message = "Username should not be empty")
+    private String username;
+
+    private String password;
+
+    @NotNull(message = "Version is required")
+    private Long version;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getAge() {
+        return age;
+    }
+
+    public void setAge(Integer age) {
+        this.age = age;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
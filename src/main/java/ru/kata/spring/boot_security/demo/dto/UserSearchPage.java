@@ -0,0 +1,48 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import java.util.List;
+
+/**
+ * One page of user search results, best match first. Numbered pages rather than
+ * keyset cursors: results are ordered by relevance, not by a column.
+ */
+public class UserSearchPage {
+
+    private final List<UserDto> content;
+    private final String query;
+    private final int page;
+    private final int size;
+    private final boolean hasNext;
+
+    public UserSearchPage(List<UserDto> content, String query, int page, int size, boolean hasNext) {
+        this.content = content;
+        this.query = query;
+        this.page = page;
+        this.size = size;
+        this.hasNext = hasNext;
+    }
+
+    public List<UserDto> getContent() {
+        return content;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isHasPrevious() {
+        return page > 0;
+    }
+
+    public boolean isHasNext() {
+        return hasNext;
+    }
+}
@@ -0,0 +1,18 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+/**
+ * Orderings the admin user list can be paged by. Both keys are unique and indexed,
+ * so they can serve as keyset (seek) cursors.
+ */
+public enum UserSort {
+    ID,
+    USERNAME;
+
+    public static UserSort fromParam(String value) {
+        return "username".equalsIgnoreCase(value) ? USERNAME : ID;
+    }
+
+    public String toParam() {
+        return name().toLowerCase();
+    }
+}
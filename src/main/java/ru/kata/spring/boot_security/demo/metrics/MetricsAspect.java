@@ -0,0 +1,78 @@
+package ru.kata.spring.boot_security.demo.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Timers around the layers a slow page can spend its time in: every DAO method,
+ * password hashing (including the wait for a hashing thread) and the principal lookup
+ * on login. Controller handlers are timed by Spring Boot itself
+ * ({@code http.server.requests}, tagged with the handler's URI template).
+ * Percentile histograms for all {@code app.*} timers are switched on in application.properties.
+ */
+@Aspect
+@Component
+public class MetricsAspect {
+
+    static final String DAO_TIMER = "app.dao";
+    static final String PASSWORD_TIMER = "app.password.hashing";
+    static final String LOAD_USER_TIMER = "app.security.load-user";
+
+    private final MeterRegistry registry;
+    // Timers of calls that returned normally, looked up per call without a builder
+    private final Map<Method, Timer> timers = new ConcurrentHashMap<>();
+
+    public MetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("within(ru.kata.spring.boot_security.demo.dao..*) && execution(public * *(..))")
+    public Object timeDao(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(DAO_TIMER, joinPoint, method -> Tags.of(
+                "dao", method.getDeclaringClass().getSimpleName(),
+                "method", method.getName()));
+    }
+
+    @Around("execution(* ru.kata.spring.boot_security.demo.security.BoundedPasswordEncoder.encode(..))"
+            + " || execution(* ru.kata.spring.boot_security.demo.security.BoundedPasswordEncoder.matches(..))")
+    public Object timePasswordHashing(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(PASSWORD_TIMER, joinPoint, method -> Tags.of("operation", method.getName()));
+    }
+
+    @Around("execution(* org.springframework.security.core.userdetails.UserDetailsService+.loadUserByUsername(..))")
+    public Object timeLoadUser(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(LOAD_USER_TIMER, joinPoint, method -> Tags.empty());
+    }
+
+    private Object time(String name, ProceedingJoinPoint joinPoint, Function<Method, Tags> tags) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            Object result = joinPoint.proceed();
+            sample.stop(timers.computeIfAbsent(method, m -> timer(name, tags.apply(m), "none")));
+            return result;
+        } catch (Throwable e) {
+            // Rare, and the exception tag varies: registered (or looked up) the usual way
+            sample.stop(timer(name, tags.apply(method), e.getClass().getSimpleName()));
+            throw e;
+        }
+    }
+
+    private Timer timer(String name, Tags tags, String exception) {
+        return Timer.builder(name)
+                .tags(tags)
+                .tag("exception", exception)
+                .register(registry);
+    }
+}
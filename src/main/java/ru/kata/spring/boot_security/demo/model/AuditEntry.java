@@ -0,0 +1,81 @@
+package ru.kata.spring.boot_security.demo.model;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * One row of the append-only audit trail. Rows are written in JDBC batches by
+ * {@code AuditTrail}, never updated or deleted; the entity only describes the table.
+ */
+@Entity
+@Table(name = "audit_log")
+public class AuditEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "audit_id")
+    private Long id;
+
+    @Column(name = "occurred_at", nullable = false)
+    private Instant occurredAt;
+
+    /** Username of the authenticated caller, "system" outside of a request. */
+    @Column(name = "actor", nullable = false, length = 100)
+    private String actor;
+
+    /** USER_SAVED, USER_UPDATED, USER_ROLES_CHANGED, ROLE_DELETED, ... */
+    @Column(name = "action", nullable = false, length = 40)
+    private String action;
+
+    @Column(name = "entity_id")
+    private Long entityId;
+
+    @Column(name = "details", length = 1000)
+    private String details;
+
+    public AuditEntry() {
+    }
+
+    public AuditEntry(Instant occurredAt, String actor, String action, Long entityId, String details) {
+        this.occurredAt = occurredAt;
+        this.actor = actor;
+        this.action = action;
+        this.entityId = entityId;
+        this.details = details;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Instant getOccurredAt() {
+        return occurredAt;
+    }
+
+    public String getActor() {
+        return actor;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public String getDetails() {
+        return details;
+    }
+
+    @Override
+    public String toString() {
+        return "AuditEntry{" +
+                "occurredAt=" + occurredAt +
+                ", actor='" + actor + '\'' +
+                ", action='" + action + '\'' +
+                ", entityId=" + entityId +
+                ", details='" + details + '\'' +
+                '}';
+    }
+}
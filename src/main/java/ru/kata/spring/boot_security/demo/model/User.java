@@ -1,5 +1,8 @@
 package ru.kata.spring.boot_security.demo.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import ru.kata.spring.boot_security.demo.validators.UniqueUsername;
@@ -14,6 +17,16 @@ import java.util.stream.Collectors;
 
 
 @Entity
+// Prefix LIKE lookups of the user search fallback; username is covered by its unique key
+@Table(indexes = {
+        @Index(name = "idx_user_name", columnList = "name"),
+        @Index(name = "idx_user_email", columnList = "email")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user")
+// UPDATE statements list only the changed columns (plus the version)
+@DynamicUpdate
+@UniqueUsername
 public class User implements UserDetails, Serializable {
 
     @Id
@@ -38,17 +51,25 @@ public class User implements UserDetails, Serializable {
     // -=-=-=-=-=-=-=-=-=-=-=-=-=
     @Column(name = "username", unique = true, nullable = false)
     @NotEmpty(message = "Username should not be empty")
-    @UniqueUsername
     private String username;
 
     @Column(name = "password", nullable = false)
     private String password;
 
+    // Optimistic lock: bumped by every UPDATE of the row. Null only before the first
+    // save, or when a form/client did not send it (then no stale check is made).
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @ManyToMany(fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user.roles")
     @JoinTable(
             name = "users_roles",
             joinColumns = @JoinColumn(name = "user_id"),
-            inverseJoinColumns = @JoinColumn(name = "role_id")
+            inverseJoinColumns = @JoinColumn(name = "role_id"),
+            // Lookups by role; the primary key is (user_id, role_id)
+            indexes = @Index(name = "idx_users_roles_role_user", columnList = "role_id, user_id")
     )
     private Set<Role> roles = new HashSet<>();
     // -=-=-=-=-=-=-=-=-=-=-=-=-=
@@ -158,6 +179,14 @@ public class User implements UserDetails, Serializable {
         this.email = email;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public void setUsername(String username) {
         this.username = username;
     }
@@ -188,7 +217,6 @@ public class User implements UserDetails, Serializable {
                 ", age=" + age +
                 ", email='" + email + '\'' +
                 ", username='" + username + '\'' +
-                ", password='" + password + '\'' +
                 ", roles=" + roles +
                 '}';
     }
@@ -0,0 +1,35 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Same as the default form login failure handling, except that logins shed by the
+ * password hashing pool get an immediate 503 instead of "wrong password".
+ */
+@Component
+public class LoginFailureHandler extends SimpleUrlAuthenticationFailureHandler {
+
+    public LoginFailureHandler() {
+        super("/login?error");
+    }
+
+    @Override
+    public void onAuthenticationFailure(HttpServletRequest request, HttpServletResponse response,
+                                        AuthenticationException exception) throws IOException, ServletException {
+        if (exception instanceof PasswordHashingRejectedException) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), exception.getMessage());
+            return;
+        }
+        super.onAuthenticationFailure(request, response, exception);
+    }
+}
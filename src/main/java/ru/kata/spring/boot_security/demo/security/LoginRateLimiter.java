@@ -0,0 +1,161 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets for login attempts, one per client address and one per username.
+ * A bucket holds {@code capacity} attempts and refills completely over {@code period}.
+ * <p>
+ * Each bucket is a single AtomicLong with the "theoretical arrival time" of the next
+ * attempt (GCRA, equivalent to a token bucket), so taking a token is one CAS and no lock.
+ * Buckets live in a bounded Caffeine cache and expire once idle for a full period,
+ * by which time they would be full again anyway.
+ */
+@Component
+@ManagedResource(objectName = "ru.kata.spring.boot_security.demo:type=Security,name=loginRateLimiter",
+        description = "Login attempt throttling")
+public class LoginRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginRateLimiter.class);
+
+    // Longer "usernames" are cut, so junk input cannot make keys arbitrarily large.
+    private static final int MAX_USERNAME_KEY_LENGTH = 100;
+
+    private final Limit addressLimit;
+    private final Limit usernameLimit;
+    private final Cache<String, AtomicLong> buckets;
+    private final LongSupplier nanoClock;
+    private final AtomicLong rejectedByAddress = new AtomicLong();
+    private final AtomicLong rejectedByUsername = new AtomicLong();
+
+    @Autowired
+    public LoginRateLimiter(@Value("${app.security.login-throttle.address.capacity:30}") int addressCapacity,
+                            @Value("${app.security.login-throttle.address.period:1m}") Duration addressPeriod,
+                            @Value("${app.security.login-throttle.username.capacity:10}") int usernameCapacity,
+                            @Value("${app.security.login-throttle.username.period:1m}") Duration usernamePeriod,
+                            @Value("${app.security.login-throttle.max-keys:100000}") long maxKeys) {
+        this(new Limit(addressCapacity, addressPeriod), new Limit(usernameCapacity, usernamePeriod),
+                maxKeys, System::nanoTime);
+    }
+
+    LoginRateLimiter(Limit addressLimit, Limit usernameLimit, long maxKeys, LongSupplier nanoClock) {
+        this.addressLimit = addressLimit;
+        this.usernameLimit = usernameLimit;
+        this.nanoClock = nanoClock;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofNanos(Math.max(addressLimit.periodNanos, usernameLimit.periodNanos)))
+                .build();
+        logger.info("Login throttling: address={}, username={}, maxKeys={}", addressLimit, usernameLimit, maxKeys);
+    }
+
+    /**
+     * Takes one attempt from the address bucket and, if that succeeds, from the username
+     * bucket. Returns 0 when the attempt may go ahead, otherwise how long (in nanoseconds)
+     * until the exhausted bucket has a token again.
+     */
+    public long tryAcquire(String remoteAddress, String username) {
+        long now = nanoClock.getAsLong();
+        long wait = take("a:" + remoteAddress, addressLimit, now);
+        if (wait > 0) {
+            rejectedByAddress.incrementAndGet();
+            return wait;
+        }
+        if (username == null || username.isBlank()) {
+            return 0;
+        }
+        wait = take("u:" + usernameKey(username), usernameLimit, now);
+        if (wait > 0) {
+            rejectedByUsername.incrementAndGet();
+        }
+        return wait;
+    }
+
+    /**
+     * Gives back the attempt a successful login took, so clients that send their password
+     * with every request (HTTP Basic) are only limited by their failures.
+     */
+    public void refund(String remoteAddress, String username) {
+        long now = nanoClock.getAsLong();
+        giveBack("a:" + remoteAddress, addressLimit, now);
+        if (username != null && !username.isBlank()) {
+            giveBack("u:" + usernameKey(username), usernameLimit, now);
+        }
+    }
+
+    @ManagedAttribute(description = "Login attempts rejected by the per-address limit")
+    public long getRejectedByAddress() {
+        return rejectedByAddress.get();
+    }
+
+    @ManagedAttribute(description = "Login attempts rejected by the per-username limit")
+    public long getRejectedByUsername() {
+        return rejectedByUsername.get();
+    }
+
+    @ManagedAttribute(description = "Approximate number of tracked buckets")
+    public long getBucketCount() {
+        return buckets.estimatedSize();
+    }
+
+    private long take(String key, Limit limit, long now) {
+        AtomicLong arrival = buckets.get(key, k -> new AtomicLong(now));
+        while (true) {
+            long current = arrival.get();
+            long next = Math.max(current, now) + limit.intervalNanos;
+            long excess = next - now - limit.periodNanos;
+            if (excess > 0) {
+                return excess;
+            }
+            if (arrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private void giveBack(String key, Limit limit, long now) {
+        AtomicLong arrival = buckets.getIfPresent(key);
+        if (arrival != null) {
+            arrival.updateAndGet(current -> Math.max(now, current - limit.intervalNanos));
+        }
+    }
+
+    private static String usernameKey(String username) {
+        String key = username.trim().toLowerCase(Locale.ROOT);
+        return key.length() > MAX_USERNAME_KEY_LENGTH ? key.substring(0, MAX_USERNAME_KEY_LENGTH) : key;
+    }
+
+    static final class Limit {
+
+        private final long periodNanos;
+        private final long intervalNanos;
+        private final int capacity;
+
+        Limit(int capacity, Duration period) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+            }
+            this.capacity = capacity;
+            this.periodNanos = period.toNanos();
+            this.intervalNanos = periodNanos / capacity;
+        }
+
+        @Override
+        public String toString() {
+            return capacity + "/" + Duration.ofNanos(periodNanos);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs in front of the form login filter and answers over-limit attempts with 429,
+ * before the user query and the bcrypt check. Not a @Component: it is added to the
+ * security filter chain only (see WebSecurityConfig), not to the servlet filters.
+ *
+ * <p>Besides the login form it covers every request with HTTP Basic credentials
+ * ({@code /auth/token}, {@code /api/**}, {@code /actuator/**}), keyed the same way by
+ * address and username. Basic clients send the password with each request, so a request
+ * that gets through authentication gives its attempt back and only failures add up.
+ */
+public class LoginThrottleFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginThrottleFilter.class);
+
+    private static final String BASIC_PREFIX = "basic ";
+
+    private final LoginRateLimiter rateLimiter;
+    private final RequestMatcher loginRequest = new AntPathRequestMatcher("/login", "POST");
+    private final RequestMatcher throttledRequest = new OrRequestMatcher(loginRequest, LoginThrottleFilter::hasBasicCredentials);
+
+    public LoginThrottleFilter(LoginRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !throttledRequest.matches(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        boolean basic = !loginRequest.matches(request);
+        String username = basic
+                ? basicUsername(request)
+                : request.getParameter(UsernamePasswordAuthenticationFilter.SPRING_SECURITY_FORM_USERNAME_KEY);
+        long waitNanos = rateLimiter.tryAcquire(request.getRemoteAddr(), username);
+        if (waitNanos > 0) {
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            logger.debug("Login attempt throttled: address={}, username={}", request.getRemoteAddr(), username);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many login attempts");
+            return;
+        }
+        filterChain.doFilter(request, response);
+        // BasicAuthenticationFilter answers bad credentials with 401
+        if (basic && response.getStatus() != HttpStatus.UNAUTHORIZED.value()) {
+            rateLimiter.refund(request.getRemoteAddr(), username);
+        }
+    }
+
+    private static boolean hasBasicCredentials(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        return header != null && header.regionMatches(true, 0, BASIC_PREFIX, 0, BASIC_PREFIX.length());
+    }
+
+    // Malformed credentials count against the address only; BasicAuthenticationFilter rejects them
+    private static String basicUsername(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        try {
+            String credentials = new String(Base64.getDecoder().decode(header.substring(BASIC_PREFIX.length()).trim()),
+                    StandardCharsets.UTF_8);
+            int colon = credentials.indexOf(':');
+            return colon < 0 ? null : credentials.substring(0, colon);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
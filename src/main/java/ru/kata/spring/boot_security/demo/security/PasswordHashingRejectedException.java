@@ -0,0 +1,14 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * Thrown when the password hashing pool is saturated. Extends AuthenticationServiceException
+ * so a rejected login reaches the form login failure handler instead of the error page.
+ */
+public class PasswordHashingRejectedException extends AuthenticationServiceException {
+
+    public PasswordHashingRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,28 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+
+/**
+ * Authentication restored from an access token, with a principal built from the token
+ * claims alone.
+ */
+public class TokenAuthentication extends AbstractAuthenticationToken {
+
+    private final UserPrincipal principal;
+
+    public TokenAuthentication(UserPrincipal principal) {
+        super(principal.getAuthorities());
+        this.principal = principal;
+        setAuthenticated(true);
+    }
+
+    @Override
+    public Object getCredentials() {
+        return null;
+    }
+
+    @Override
+    public UserPrincipal getPrincipal() {
+        return principal;
+    }
+}
@@ -0,0 +1,79 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Authenticates stateless mode requests from a bearer access token or the access token
+ * cookie, without a session or a query. When the cookie is missing or expired but the
+ * refresh cookie is still valid, the user is reloaded once and a new access cookie is set.
+ * Not a @Component: it is added to the security filter chain only (see WebSecurityConfig).
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenAuthenticationFilter.class);
+
+    private static final String BEARER = "Bearer ";
+
+    private final TokenService tokenService;
+
+    public TokenAuthenticationFilter(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            authenticate(request, response);
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private void authenticate(HttpServletRequest request, HttpServletResponse response) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            // An invalid bearer token is left unauthenticated, the entry point answers 401
+            TokenService.Claims claims = tokenService.verify(header.substring(BEARER.length()).trim(),
+                    TokenService.Type.ACCESS);
+            if (claims != null) {
+                setAuthentication(new TokenAuthentication(tokenService.toPrincipal(claims)));
+            }
+            return;
+        }
+
+        TokenService.Claims claims = tokenService.verify(TokenCookies.read(request, TokenCookies.ACCESS),
+                TokenService.Type.ACCESS);
+        if (claims != null) {
+            setAuthentication(new TokenAuthentication(tokenService.toPrincipal(claims)));
+            return;
+        }
+        String refreshToken = TokenCookies.read(request, TokenCookies.REFRESH);
+        if (refreshToken == null) {
+            return;
+        }
+        UserPrincipal user = tokenService.refresh(refreshToken);
+        if (user == null) {
+            TokenCookies.clear(request, response, TokenCookies.ACCESS);
+            TokenCookies.clear(request, response, TokenCookies.REFRESH);
+            return;
+        }
+        logger.debug("Access token refreshed for {}", user.getUsername());
+        TokenCookies.write(request, response, TokenCookies.ACCESS,
+                tokenService.issue(user, TokenService.Type.ACCESS), tokenService.getAccessTtl());
+        setAuthentication(new TokenAuthentication(user));
+    }
+
+    private static void setAuthentication(TokenAuthentication authentication) {
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+    }
+}
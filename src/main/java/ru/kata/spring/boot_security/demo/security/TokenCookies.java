@@ -0,0 +1,55 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+
+/**
+ * The cookies browsers carry the stateless mode tokens in: HttpOnly, SameSite=Lax and
+ * Secure whenever the request came over HTTPS.
+ */
+public final class TokenCookies {
+
+    public static final String ACCESS = "AUTH_TOKEN";
+    public static final String REFRESH = "REFRESH_TOKEN";
+
+    private TokenCookies() {
+    }
+
+    public static String read(HttpServletRequest request, String name) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (name.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    public static void write(HttpServletRequest request, HttpServletResponse response,
+                             String name, String value, Duration maxAge) {
+        ResponseCookie cookie = ResponseCookie.from(name, value)
+                .path(cookiePath(request))
+                .maxAge(maxAge)
+                .httpOnly(true)
+                .secure(request.isSecure())
+                .sameSite("Lax")
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
+    public static void clear(HttpServletRequest request, HttpServletResponse response, String name) {
+        write(request, response, name, "", Duration.ZERO);
+    }
+
+    private static String cookiePath(HttpServletRequest request) {
+        String contextPath = request.getContextPath();
+        return contextPath.isEmpty() ? "/" : contextPath;
+    }
+}
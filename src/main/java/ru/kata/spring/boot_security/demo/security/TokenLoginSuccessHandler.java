@@ -0,0 +1,35 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Form login success in the stateless mode: sets the access and refresh cookies, then
+ * redirects like the session mode does.
+ */
+public class TokenLoginSuccessHandler implements AuthenticationSuccessHandler {
+
+    private final TokenService tokenService;
+    private final AuthenticationSuccessHandler delegate;
+
+    public TokenLoginSuccessHandler(TokenService tokenService, AuthenticationSuccessHandler delegate) {
+        this.tokenService = tokenService;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response,
+                                        Authentication authentication) throws IOException, ServletException {
+        UserPrincipal user = (UserPrincipal) authentication.getPrincipal();
+        TokenCookies.write(request, response, TokenCookies.ACCESS,
+                tokenService.issue(user, TokenService.Type.ACCESS), tokenService.getAccessTtl());
+        TokenCookies.write(request, response, TokenCookies.REFRESH,
+                tokenService.issue(user, TokenService.Type.REFRESH), tokenService.getRefreshTtl());
+        delegate.onAuthenticationSuccess(request, response, authentication);
+    }
+}
@@ -0,0 +1,273 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Issues and verifies the HMAC-SHA256 signed tokens of the stateless mode
+ * ({@code app.security.stateless.enabled=true}). A token is {@code kid.payload.signature}:
+ * the id of the key that signed it, the base64url JSON claims (user id, username,
+ * authorities, expiry) and the base64url MAC of the first two parts.
+ *
+ * <p>Access tokens are verified from the claims alone, without a query or a session.
+ * Refresh tokens live longer and are only accepted together with a fresh load of the user,
+ * so a deleted user or a changed role set takes effect on the next refresh at the latest.
+ *
+ * <p>Keys come from {@code app.security.token.keys} as {@code kid:base64-secret} pairs.
+ * The first one signs, all of them verify: to rotate, put the new key in front and drop
+ * the old one once the refresh TTL has passed.
+ */
+@Component
+@ConditionalOnProperty(name = "app.security.stateless.enabled", havingValue = "true")
+public class TokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenService.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_KEY_BYTES = 32;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    public enum Type { ACCESS, REFRESH }
+
+    private final Map<String, Mac> macs;
+    private final String signingKid;
+    private final Duration accessTtl;
+    private final Duration refreshTtl;
+    private final UserDetailsService userDetailsService;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+
+    @Autowired
+    public TokenService(@Value("${app.security.token.keys:}") String keys,
+                        @Value("${app.security.token.ttl:15m}") Duration accessTtl,
+                        @Value("${app.security.token.refresh-ttl:8h}") Duration refreshTtl,
+                        UserDetailsService userDetailsService,
+                        ObjectMapper objectMapper) {
+        this(keys, accessTtl, refreshTtl, userDetailsService, objectMapper, Clock.systemUTC());
+    }
+
+    TokenService(String keys, Duration accessTtl, Duration refreshTtl,
+                 UserDetailsService userDetailsService, ObjectMapper objectMapper, Clock clock) {
+        this.macs = parseKeys(keys);
+        this.signingKid = macs.keySet().iterator().next();
+        this.accessTtl = accessTtl;
+        this.refreshTtl = refreshTtl;
+        this.userDetailsService = userDetailsService;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        logger.info("Stateless tokens: signing key={}, verification keys={}, ttl={}, refreshTtl={}",
+                signingKid, macs.keySet(), accessTtl, refreshTtl);
+    }
+
+    public String issue(UserPrincipal user, Type type) {
+        Duration ttl = type == Type.ACCESS ? accessTtl : refreshTtl;
+        List<String> authorities = user.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toList());
+        Claims claims = new Claims(type, user.getId(), user.getUsername(), authorities,
+                clock.instant().plus(ttl).getEpochSecond());
+        try {
+            String signed = signingKid + '.' + ENCODER.encodeToString(objectMapper.writeValueAsBytes(claims));
+            return signed + '.' + ENCODER.encodeToString(sign(signingKid, signed));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot serialize token claims", e);
+        }
+    }
+
+    /**
+     * @return the claims of a token of the given type with a valid signature from a known
+     * key that has not expired yet, or {@code null} for anything else
+     */
+    public Claims verify(String token, Type type) {
+        if (token == null) {
+            return null;
+        }
+        int first = token.indexOf('.');
+        int last = token.lastIndexOf('.');
+        if (first <= 0 || last == first) {
+            return null;
+        }
+        String kid = token.substring(0, first);
+        if (!macs.containsKey(kid)) {
+            logger.debug("Token signed with unknown key {}", kid);
+            return null;
+        }
+        try {
+            byte[] signature = DECODER.decode(token.substring(last + 1));
+            if (!MessageDigest.isEqual(signature, sign(kid, token.substring(0, last)))) {
+                logger.debug("Token with a bad signature, key {}", kid);
+                return null;
+            }
+            Claims claims = objectMapper.readValue(DECODER.decode(token.substring(first + 1, last)), Claims.class);
+            if (claims.getType() != type || claims.getExpiresAt() <= clock.instant().getEpochSecond()) {
+                return null;
+            }
+            return claims;
+        } catch (IllegalArgumentException | IOException e) {
+            logger.debug("Malformed token: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /** The same principal a form login has, minus the password hash. */
+    public UserPrincipal toPrincipal(Claims claims) {
+        return new UserPrincipal(claims.getUserId(), claims.getUsername(), null, claims.getAuthorities());
+    }
+
+    /**
+     * Checks a refresh token and reloads its user, so the new access token carries the
+     * current roles.
+     *
+     * @return the user, or {@code null} if the token is not valid or the user is gone
+     */
+    public UserPrincipal refresh(String refreshToken) {
+        Claims claims = verify(refreshToken, Type.REFRESH);
+        if (claims == null) {
+            return null;
+        }
+        UserDetails details;
+        try {
+            details = userDetailsService.loadUserByUsername(claims.getUsername());
+        } catch (UsernameNotFoundException e) {
+            logger.debug("Refresh for a user that no longer exists: {}", claims.getUsername());
+            return null;
+        }
+        // A username given to another account after a delete/rename must not match
+        if (!(details instanceof UserPrincipal) || ((UserPrincipal) details).getId() != claims.getUserId()
+                || !details.isEnabled()) {
+            return null;
+        }
+        return (UserPrincipal) details;
+    }
+
+    public Duration getAccessTtl() {
+        return accessTtl;
+    }
+
+    public Duration getRefreshTtl() {
+        return refreshTtl;
+    }
+
+    private byte[] sign(String kid, String content) {
+        try {
+            // Mac instances are not thread-safe; a clone skips the provider lookup and key init
+            Mac mac = (Mac) macs.get(kid).clone();
+            return mac.doFinal(content.getBytes(StandardCharsets.US_ASCII));
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, Mac> parseKeys(String keys) {
+        Map<String, Mac> macs = new LinkedHashMap<>();
+        for (String entry : keys.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int colon = trimmed.indexOf(':');
+            if (colon <= 0 || trimmed.indexOf('.') >= 0) {
+                throw new IllegalStateException("app.security.token.keys entries must be kid:base64-secret");
+            }
+            byte[] secret = Base64.getDecoder().decode(trimmed.substring(colon + 1));
+            if (secret.length < MIN_KEY_BYTES) {
+                throw new IllegalStateException("Token key " + trimmed.substring(0, colon)
+                        + " is shorter than " + MIN_KEY_BYTES + " bytes");
+            }
+            macs.put(trimmed.substring(0, colon), mac(secret));
+        }
+        if (macs.isEmpty()) {
+            logger.warn("app.security.token.keys is not set: using a random key, tokens will not "
+                    + "survive a restart or be accepted by other instances");
+            byte[] secret = new byte[MIN_KEY_BYTES];
+            new SecureRandom().nextBytes(secret);
+            macs.put("generated", mac(secret));
+        }
+        return macs;
+    }
+
+    private static Mac mac(byte[] secret) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret, ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize " + ALGORITHM, e);
+        }
+    }
+
+    public static final class Claims {
+
+        private final Type type;
+        private final int userId;
+        private final String username;
+        private final List<String> authorities;
+        private final long expiresAt;
+
+        @JsonCreator
+        public Claims(@JsonProperty("typ") Type type,
+                      @JsonProperty("uid") int userId,
+                      @JsonProperty("sub") String username,
+                      @JsonProperty("auth") List<String> authorities,
+                      @JsonProperty("exp") long expiresAt) {
+            this.type = type;
+            this.userId = userId;
+            this.username = username;
+            this.authorities = authorities == null ? List.of() : authorities;
+            this.expiresAt = expiresAt;
+        }
+
+        @JsonProperty("typ")
+        public Type getType() {
+            return type;
+        }
+
+        @JsonProperty("uid")
+        public int getUserId() {
+            return userId;
+        }
+
+        @JsonProperty("sub")
+        public String getUsername() {
+            return username;
+        }
+
+        @JsonProperty("auth")
+        public List<String> getAuthorities() {
+            return authorities;
+        }
+
+        // Epoch seconds
+        @JsonProperty("exp")
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+}
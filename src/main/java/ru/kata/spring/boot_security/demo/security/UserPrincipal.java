@@ -0,0 +1,201 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * What the security context (and so the session) holds for a logged in user: id, username
+ * and authorities, instead of the whole User entity with its profile fields and the
+ * Hibernate role collection. Pages that show the profile load it by id (the entity and
+ * its roles are in the second-level cache).
+ *
+ * <p>The serialized form is the id, the username and the authority names. The password
+ * hash is only kept in memory for the login check and the principal cache; authorities
+ * and authority sets are interned, so all sessions with the same roles share them.
+ */
+public final class UserPrincipal implements UserDetails, Externalizable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final ConcurrentMap<String, Authority> AUTHORITIES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<List<String>, Set<GrantedAuthority>> AUTHORITY_SETS = new ConcurrentHashMap<>();
+
+    private int id;
+    private String username;
+    private transient String password;
+    private Set<GrantedAuthority> authorities;
+
+    /** For deserialization only. */
+    public UserPrincipal() {
+    }
+
+    public UserPrincipal(int id, String username, String password, Collection<String> authorityNames) {
+        this.id = id;
+        this.username = username;
+        this.password = password;
+        this.authorities = authoritySet(authorityNames);
+    }
+
+    public static UserPrincipal of(User user) {
+        List<String> names = new ArrayList<>(user.getRoles().size());
+        for (Role role : user.getRoles()) {
+            names.add(role.getName());
+        }
+        return new UserPrincipal(user.getId(), user.getUsername(), user.getPassword(), names);
+    }
+
+    public UserPrincipal withPassword(String password) {
+        UserPrincipal copy = new UserPrincipal();
+        copy.id = id;
+        copy.username = username;
+        copy.password = password;
+        copy.authorities = authorities;
+        return copy;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public Set<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeInt(id);
+        out.writeUTF(username);
+        out.writeShort(authorities.size());
+        for (GrantedAuthority authority : authorities) {
+            out.writeUTF(authority.getAuthority());
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        id = in.readInt();
+        username = in.readUTF();
+        int count = in.readShort();
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(in.readUTF());
+        }
+        authorities = authoritySet(names);
+    }
+
+    // Same username, same principal: SessionRegistry and the remember-me checks rely on it
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof UserPrincipal && username.equals(((UserPrincipal) o).username);
+    }
+
+    @Override
+    public int hashCode() {
+        return username.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "UserPrincipal{id=" + id + ", username='" + username + "', authorities=" + authorities + '}';
+    }
+
+    private static GrantedAuthority authority(String name) {
+        return AUTHORITIES.computeIfAbsent(name, Authority::new);
+    }
+
+    private static Set<GrantedAuthority> authoritySet(Collection<String> names) {
+        List<String> key = new ArrayList<>(names);
+        Collections.sort(key);
+        return AUTHORITY_SETS.computeIfAbsent(key, sorted -> {
+            Set<GrantedAuthority> set = new LinkedHashSet<>();
+            sorted.forEach(name -> set.add(authority(name)));
+            return Collections.unmodifiableSet(set);
+        });
+    }
+
+    /**
+     * Interned on deserialization too, so the authority list the Authentication itself
+     * keeps in the session points at the same instances.
+     */
+    private static final class Authority implements GrantedAuthority, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+
+        private Authority(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getAuthority() {
+            return name;
+        }
+
+        private Object readResolve() {
+            return authority(name);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof Authority && name.equals(((Authority) o).name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.kata.spring.boot_security.demo.service;
+
+/**
+ * Published by {@link RoleServiceImpl} after every write to the role table.
+ */
+public class RoleChangedEvent {
+
+    public enum Type { SAVED, UPDATED, DELETED, ALL_DELETED }
+
+    private final Type type;
+    private final Long roleId;
+    private final String name;
+
+    public RoleChangedEvent(Type type, Long roleId, String name) {
+        this.type = type;
+        this.roleId = roleId;
+        this.name = name;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Long getRoleId() {
+        return roleId;
+    }
+
+    /** Role name, {@code null} if unknown (deletes by id). */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "RoleChangedEvent{" +
+                "type=" + type +
+                ", roleId=" + roleId +
+                ", name='" + name + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,130 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.kata.spring.boot_security.demo.dao.RoleDAO;
+import ru.kata.spring.boot_security.demo.model.Role;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide, copy-on-write snapshot of the role table. Lookups never touch the
+ * database; every change replaces the whole immutable snapshot after the writing
+ * transaction commits. A miss means the snapshot is behind (e.g. a role created in
+ * the current transaction or by another node): callers fall back to the database and
+ * the snapshot is reloaded.
+ */
+@Component
+public class RoleRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoleRegistry.class);
+
+    private static final class Snapshot {
+        final List<Role> all;
+        final Map<Long, Role> byId;
+        final Map<String, Role> byName;
+
+        Snapshot(List<Role> roles) {
+            Map<Long, Role> ids = new HashMap<>();
+            Map<String, Role> names = new HashMap<>();
+            for (Role role : roles) {
+                ids.put(role.getId(), role);
+                names.put(role.getName(), role);
+            }
+            this.all = Collections.unmodifiableList(new ArrayList<>(roles));
+            this.byId = Collections.unmodifiableMap(ids);
+            this.byName = Collections.unmodifiableMap(names);
+        }
+    }
+
+    private final RoleDAO roleDAO;
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public RoleRegistry(RoleDAO roleDAO) {
+        this.roleDAO = roleDAO;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void load() {
+        Snapshot loaded = new Snapshot(roleDAO.getAllRoles());
+        snapshot = loaded;
+        logger.info("Role registry loaded: {} roles", loaded.all.size());
+    }
+
+    /** Reloads now, or after commit when called inside a transaction. */
+    public void reloadAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    load();
+                }
+            });
+        } else {
+            load();
+        }
+    }
+
+    public List<Role> getAll() {
+        return current().all;
+    }
+
+    public Role getById(Long id) {
+        return current().byId.get(id);
+    }
+
+    public Role getByName(String name) {
+        return current().byName.get(name);
+    }
+
+    /** Roles found in the snapshot; ids not found are added to {@code missing}. */
+    public List<Role> getByIds(Collection<Long> ids, Collection<Long> missing) {
+        Snapshot current = current();
+        List<Role> roles = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Role role = current.byId.get(id);
+            if (role != null) {
+                roles.add(role);
+            } else {
+                missing.add(id);
+            }
+        }
+        return roles;
+    }
+
+    /** Roles found in the snapshot; names not found are added to {@code missing}. */
+    public List<Role> getByNames(Collection<String> names, Collection<String> missing) {
+        Snapshot current = current();
+        List<Role> roles = new ArrayList<>(names.size());
+        for (String name : names) {
+            Role role = current.byName.get(name);
+            if (role != null) {
+                roles.add(role);
+            } else {
+                missing.add(name);
+            }
+        }
+        return roles;
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            load();
+            current = snapshot;
+        }
+        return current;
+    }
+}
@@ -1,6 +1,7 @@
 package ru.kata.spring.boot_security.demo.service;
 
 import ru.kata.spring.boot_security.demo.model.Role;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -18,6 +19,7 @@ public interface RoleService {
     void deleteAllRoles();
 
     Set<Role> getRolesByNames(Set<String> roleNames);
+    Set<Role> getRolesByIds(Collection<Long> roleIds);
 
     void createDefaultRoles();
 }
\ No newline at end of file
@@ -5,9 +5,12 @@ import ru.kata.spring.boot_security.demo.model.Role;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -18,31 +21,48 @@ public class RoleServiceImpl implements RoleService {
     private static final Logger logger = LoggerFactory.getLogger(RoleServiceImpl.class);
 
     private final RoleDAO roleDAO;
+    // Lookups are served from the registry and are deliberately not @Transactional,
+    // so a registry hit does not even check a connection out of the pool.
+    private final RoleRegistry roleRegistry;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public RoleServiceImpl(RoleDAO roleDAO) {
+    public RoleServiceImpl(RoleDAO roleDAO, RoleRegistry roleRegistry, ApplicationEventPublisher eventPublisher) {
         this.roleDAO = roleDAO;
+        this.roleRegistry = roleRegistry;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
-    @Transactional(readOnly = true)
     public List<Role> getAllRoles() {
         logger.debug("Getting all roles");
-        return roleDAO.getAllRoles();
+        return roleRegistry.getAll();
     }
 
     @Override
-    @Transactional(readOnly = true)
     public Role getRoleById(Long id) {
         logger.debug("Getting role by id: {}", id);
-        return roleDAO.getRoleById(id);
+        Role role = roleRegistry.getById(id);
+        if (role == null) {
+            role = roleDAO.getRoleById(id);
+            if (role != null) {
+                roleRegistry.reloadAfterCommit();
+            }
+        }
+        return role;
     }
 
     @Override
-    @Transactional(readOnly = true)
     public Role getRoleByName(String name) {
         logger.debug("Getting role by name: {}", name);
-        return roleDAO.getRoleByName(name);
+        Role role = roleRegistry.getByName(name);
+        if (role == null) {
+            role = roleDAO.getRoleByName(name);
+            if (role != null) {
+                roleRegistry.reloadAfterCommit();
+            }
+        }
+        return role;
     }
 
     @Override
@@ -50,6 +70,8 @@ public class RoleServiceImpl implements RoleService {
     public void saveRole(Role role) {
         logger.info("Saving role: {}", role.getName());
         roleDAO.save(role);
+        roleRegistry.reloadAfterCommit();
+        eventPublisher.publishEvent(new RoleChangedEvent(RoleChangedEvent.Type.SAVED, role.getId(), role.getName()));
     }
 
     @Override
@@ -57,13 +79,19 @@ public class RoleServiceImpl implements RoleService {
     public void updateRole(Role role) {
         logger.info("Updating role with id: {}", role.getId());
         roleDAO.update(role);
+        roleRegistry.reloadAfterCommit();
+        eventPublisher.publishEvent(new RoleChangedEvent(RoleChangedEvent.Type.UPDATED, role.getId(), role.getName()));
     }
 
     @Override
     @Transactional
     public void deleteRole(Long id) {
         logger.info("Deleting role with id: {}", id);
+        Role existing = roleRegistry.getById(id);
         roleDAO.delete(id);
+        roleRegistry.reloadAfterCommit();
+        eventPublisher.publishEvent(new RoleChangedEvent(RoleChangedEvent.Type.DELETED, id,
+                existing == null ? null : existing.getName()));
     }
 
     @Override
@@ -71,23 +99,49 @@ public class RoleServiceImpl implements RoleService {
     public void deleteAllRoles() {
         logger.warn("Deleting all roles!");
         roleDAO.deleteAllRoles();
+        roleRegistry.reloadAfterCommit();
+        eventPublisher.publishEvent(new RoleChangedEvent(RoleChangedEvent.Type.ALL_DELETED, null, null));
     }
 
     @Override
-    @Transactional(readOnly = true)
     public Set<Role> getRolesByNames(Set<String> roleNames) {
         logger.debug("Getting roles by names: {}", roleNames);
         if (roleNames == null || roleNames.isEmpty()) {
             return new HashSet<>();
         }
 
-        Set<Role> roles = new HashSet<>();
-        for (String roleName : roleNames) {
-            Role role = getRoleByName(roleName);
-            if (role != null) {
-                roles.add(role);
-            } else {
-                logger.warn("Role with name '{}' not found", roleName);
+        List<String> missing = new ArrayList<>();
+        Set<Role> roles = new HashSet<>(roleRegistry.getByNames(roleNames, missing));
+        if (!missing.isEmpty()) {
+            List<Role> found = roleDAO.getRolesByNames(missing);
+            roles.addAll(found);
+            if (!found.isEmpty()) {
+                roleRegistry.reloadAfterCommit();
+            }
+            if (found.size() < missing.size()) {
+                logger.warn("Roles not found among: {}", missing);
+            }
+        }
+        return roles;
+    }
+
+    @Override
+    public Set<Role> getRolesByIds(Collection<Long> roleIds) {
+        logger.debug("Getting roles by ids: {}", roleIds);
+        if (roleIds == null || roleIds.isEmpty()) {
+            return new HashSet<>();
+        }
+
+        List<Long> missing = new ArrayList<>();
+        Set<Role> roles = new HashSet<>(roleRegistry.getByIds(roleIds, missing));
+        if (!missing.isEmpty()) {
+            List<Role> found = roleDAO.getRolesByIds(missing);
+            roles.addAll(found);
+            if (!found.isEmpty()) {
+                roleRegistry.reloadAfterCommit();
+            }
+            if (found.size() < missing.size()) {
+                logger.warn("Roles not found among ids: {}", missing);
             }
         }
         return roles;
@@ -112,4 +166,4 @@ public class RoleServiceImpl implements RoleService {
             logger.info("Created default role: ROLE_USER");
         }
     }
-}
\ No newline at end of file
+}
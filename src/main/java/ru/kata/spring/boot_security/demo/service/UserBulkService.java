@@ -0,0 +1,21 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import ru.kata.spring.boot_security.demo.dto.BulkResult;
+
+import java.util.Collection;
+
+/**
+ * Admin operations on many users at once. Ids are processed in chunks, each with
+ * set-based statements in its own transaction, so a large selection neither builds an
+ * oversized IN list nor holds row locks for the whole run. A failed chunk is reported
+ * as FAILED and the next one still runs.
+ */
+public interface UserBulkService {
+
+    /** Deletes the users with their role links; {@code currentUserId} is never deleted. */
+    BulkResult deleteUsers(Collection<Integer> ids, int currentUserId);
+
+    BulkResult grantRole(Collection<Integer> ids, long roleId);
+
+    BulkResult revokeRole(Collection<Integer> ids, long roleId);
+}
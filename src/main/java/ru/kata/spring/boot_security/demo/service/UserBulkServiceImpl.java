@@ -0,0 +1,160 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.dto.BulkResult;
+import ru.kata.spring.boot_security.demo.dto.BulkResult.Outcome;
+import ru.kata.spring.boot_security.demo.model.Role;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Service
+@Slf4j
+public class UserBulkServiceImpl implements UserBulkService {
+
+    private final UserDAO userDAO;
+    private final RoleService roleService;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    // Bounds the IN list (one packet, one index range) and the rows locked at a time
+    private final int chunkSize;
+
+    @Autowired
+    public UserBulkServiceImpl(UserDAO userDAO,
+                               RoleService roleService,
+                               PlatformTransactionManager transactionManager,
+                               ApplicationEventPublisher eventPublisher,
+                               @Value("${app.bulk.chunk-size:500}") int chunkSize) {
+        this.userDAO = userDAO;
+        this.roleService = roleService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public BulkResult deleteUsers(Collection<Integer> ids, int currentUserId) {
+        log.info("Bulk delete of {} users", ids.size());
+        return run("delete", ids, (chunk, result) -> {
+            Map<Integer, String> usernames = userDAO.getUsernamesByIds(chunk);
+            List<Integer> toDelete = new ArrayList<>(usernames.size());
+            for (Integer id : chunk) {
+                if (!usernames.containsKey(id)) {
+                    result.set(id, Outcome.NOT_FOUND);
+                } else if (id == currentUserId) {
+                    result.set(id, Outcome.SKIPPED);
+                } else {
+                    toDelete.add(id);
+                }
+            }
+            userDAO.deleteUsers(toDelete);
+            for (Integer id : toDelete) {
+                result.set(id, Outcome.DELETED);
+                eventPublisher.publishEvent(UserChangedEvent.deleted(id, usernames.get(id)));
+            }
+        });
+    }
+
+    @Override
+    public BulkResult grantRole(Collection<Integer> ids, long roleId) {
+        Role role = requireRole(roleId);
+        log.info("Bulk grant of {} to {} users", role.getName(), ids.size());
+        return run("grant", ids, (chunk, result) -> {
+            Map<Integer, String> usernames = userDAO.getUsernamesByIds(chunk);
+            Set<Integer> existing = usernames.keySet();
+            Set<Integer> holders = userDAO.getUserIdsWithRole(chunk, roleId);
+            List<Integer> toGrant = new ArrayList<>(chunk.size());
+            for (Integer id : chunk) {
+                if (!existing.contains(id)) {
+                    result.set(id, Outcome.NOT_FOUND);
+                } else if (holders.contains(id)) {
+                    result.set(id, Outcome.UNCHANGED);
+                } else {
+                    toGrant.add(id);
+                }
+            }
+            userDAO.addRoleToUsers(toGrant, roleId);
+            userDAO.incrementVersions(toGrant);
+            for (Integer id : toGrant) {
+                result.set(id, Outcome.GRANTED);
+                eventPublisher.publishEvent(
+                        UserChangedEvent.rolesChanged(id, usernames.get(id), "added=[" + roleId + "]"));
+            }
+        });
+    }
+
+    @Override
+    public BulkResult revokeRole(Collection<Integer> ids, long roleId) {
+        Role role = requireRole(roleId);
+        log.info("Bulk revoke of {} from {} users", role.getName(), ids.size());
+        return run("revoke", ids, (chunk, result) -> {
+            Map<Integer, String> usernames = userDAO.getUsernamesByIds(chunk);
+            Set<Integer> existing = usernames.keySet();
+            Set<Integer> holders = userDAO.getUserIdsWithRole(chunk, roleId);
+            for (Integer id : chunk) {
+                if (!existing.contains(id)) {
+                    result.set(id, Outcome.NOT_FOUND);
+                } else if (!holders.contains(id)) {
+                    result.set(id, Outcome.UNCHANGED);
+                }
+            }
+            userDAO.removeRoleFromUsers(holders, roleId);
+            userDAO.incrementVersions(holders);
+            for (Integer id : holders) {
+                result.set(id, Outcome.REVOKED);
+                eventPublisher.publishEvent(
+                        UserChangedEvent.rolesChanged(id, usernames.get(id), "removed=[" + roleId + "]"));
+            }
+        });
+    }
+
+    private Role requireRole(long roleId) {
+        Set<Role> roles = roleService.getRolesByIds(List.of(roleId));
+        if (roles.isEmpty()) {
+            throw new IllegalArgumentException("Unknown role id: " + roleId);
+        }
+        return roles.iterator().next();
+    }
+
+    /**
+     * Runs {@code chunkAction} for each chunk of the distinct ids in its own transaction.
+     * Outcomes recorded by a chunk that then fails are replaced with FAILED.
+     */
+    private BulkResult run(String action, Collection<Integer> ids, ChunkAction chunkAction) {
+        long start = System.currentTimeMillis();
+        BulkResult result = new BulkResult(action);
+        List<Integer> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        // Request order in the result, whatever order the chunks fill it in
+        distinct.forEach(id -> result.set(id, Outcome.FAILED));
+
+        for (int from = 0; from < distinct.size(); from += chunkSize) {
+            List<Integer> chunk = distinct.subList(from, Math.min(from + chunkSize, distinct.size()));
+            try {
+                transactionTemplate.executeWithoutResult(status -> chunkAction.apply(chunk, result));
+            } catch (RuntimeException e) {
+                log.error("Bulk {} failed for {} users starting at id {}", action, chunk.size(), chunk.get(0), e);
+                chunk.forEach(id -> result.set(id, Outcome.FAILED));
+            }
+        }
+
+        result.finish(System.currentTimeMillis() - start);
+        log.info("Bulk {} finished in {} ms: {}", action, result.getElapsedMillis(), result.getCounts());
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface ChunkAction {
+        void apply(List<Integer> chunk, BulkResult result);
+    }
+}
@@ -0,0 +1,124 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import ru.kata.spring.boot_security.demo.model.User;
+
+/**
+ * Published by {@link UserServiceImpl} after every write to the users table.
+ * Listeners that keep derived state (caches, indexes) react to it after commit.
+ */
+public class UserChangedEvent {
+
+    public enum Type { SAVED, UPDATED, ROLES_CHANGED, DELETED, ALL_DELETED }
+
+    private final Type type;
+    private final int userId;
+    private final String username;
+    private final String previousUsername;
+    private final String details;
+    private final String name;
+    private final String email;
+
+    public UserChangedEvent(Type type, int userId, String username, String previousUsername) {
+        this(type, userId, username, previousUsername, null);
+    }
+
+    public UserChangedEvent(Type type, int userId, String username, String previousUsername, String details) {
+        this(type, userId, username, previousUsername, details, null, null);
+    }
+
+    private UserChangedEvent(Type type, int userId, String username, String previousUsername, String details,
+                             String name, String email) {
+        this.type = type;
+        this.userId = userId;
+        this.username = username;
+        this.previousUsername = previousUsername;
+        this.details = details;
+        this.name = name;
+        this.email = email;
+    }
+
+    /** Like {@link #saved(int, String)}, also carrying the searchable fields. */
+    public static UserChangedEvent saved(User user) {
+        return new UserChangedEvent(Type.SAVED, user.getId(), user.getUsername(), null, null,
+                user.getName(), user.getEmail());
+    }
+
+    /** Like {@link #updated(int, String, String)}, also carrying the searchable fields. */
+    public static UserChangedEvent updated(User user, String previousUsername) {
+        return new UserChangedEvent(Type.UPDATED, user.getId(), user.getUsername(), previousUsername, null,
+                user.getName(), user.getEmail());
+    }
+
+    public static UserChangedEvent saved(int userId, String username) {
+        return new UserChangedEvent(Type.SAVED, userId, username, null);
+    }
+
+    public static UserChangedEvent updated(int userId, String username, String previousUsername) {
+        return new UserChangedEvent(Type.UPDATED, userId, username, previousUsername);
+    }
+
+    public static UserChangedEvent rolesChanged(int userId) {
+        return rolesChanged(userId, null);
+    }
+
+    public static UserChangedEvent rolesChanged(int userId, String details) {
+        return rolesChanged(userId, null, details);
+    }
+
+    /** With the username, listeners can evict by key instead of looking the id up. */
+    public static UserChangedEvent rolesChanged(int userId, String username, String details) {
+        return new UserChangedEvent(Type.ROLES_CHANGED, userId, username, null, details);
+    }
+
+    public static UserChangedEvent deleted(int userId, String username) {
+        return new UserChangedEvent(Type.DELETED, userId, username, null);
+    }
+
+    public static UserChangedEvent allDeleted() {
+        return new UserChangedEvent(Type.ALL_DELETED, 0, null, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    /** Username after the change (the removed one for deletes), {@code null} if unknown. */
+    public String getUsername() {
+        return username;
+    }
+
+    /** Username before an update, {@code null} if unknown or unchanged. */
+    public String getPreviousUsername() {
+        return previousUsername;
+    }
+
+    /** Name after a save or update, {@code null} if the event does not carry it. */
+    public String getName() {
+        return name;
+    }
+
+    /** Email after a save or update, {@code null} if the event does not carry it. */
+    public String getEmail() {
+        return email;
+    }
+
+    /** Free-form description of the change for the audit trail, {@code null} if none. */
+    public String getDetails() {
+        return details;
+    }
+
+    @Override
+    public String toString() {
+        return "UserChangedEvent{" +
+                "type=" + type +
+                ", userId=" + userId +
+                ", username='" + username + '\'' +
+                ", previousUsername='" + previousUsername + '\'' +
+                ", details='" + details + '\'' +
+                '}';
+    }
+}
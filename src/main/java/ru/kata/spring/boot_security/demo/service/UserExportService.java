@@ -0,0 +1,15 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface UserExportService {
+
+    enum Format { CSV, NDJSON }
+
+    /**
+     * Writes every user with its role names to {@code output} while reading them,
+     * so memory use does not depend on the number of users.
+     */
+    void export(OutputStream output, Format format) throws IOException;
+}
@@ -0,0 +1,93 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.dto.UserDto;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+@Service
+@Slf4j
+public class UserExportServiceImpl implements UserExportService {
+
+    private final UserDAO userDAO;
+    private final ObjectWriter jsonWriter;
+    private final int fetchSize;
+
+    @Autowired
+    public UserExportServiceImpl(UserDAO userDAO,
+                                 ObjectMapper objectMapper,
+                                 @Value("${app.export.fetch-size:1000}") int fetchSize) {
+        this.userDAO = userDAO;
+        this.jsonWriter = objectMapper.writerFor(UserDto.class);
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void export(OutputStream output, Format format) throws IOException {
+        log.info("Exporting users as {}", format);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            writer.write("id,username,name,age,email,roles\n");
+        }
+
+        long[] count = {0};
+        try {
+            userDAO.scrollUsersWithRoleNames(fetchSize, user -> {
+                try {
+                    if (format == Format.CSV) {
+                        writeCsv(writer, user);
+                    } else {
+                        writer.write(jsonWriter.writeValueAsString(user));
+                        writer.write('\n');
+                    }
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        log.info("Exported {} users", count[0]);
+    }
+
+    private static void writeCsv(Writer writer, UserDto user) throws IOException {
+        writer.write(Integer.toString(user.getId()));
+        writer.write(',');
+        writer.write(csv(user.getUsername()));
+        writer.write(',');
+        writer.write(csv(user.getName()));
+        writer.write(',');
+        writer.write(Integer.toString(user.getAge()));
+        writer.write(',');
+        writer.write(csv(user.getEmail()));
+        writer.write(',');
+        writer.write(csv(String.join(";", user.getRoles())));
+        writer.write('\n');
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import ru.kata.spring.boot_security.demo.dto.ProvisioningReport;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface UserProvisioningService {
+
+    enum Format { CSV, JSON }
+
+    /**
+     * Streams users from {@code input} and imports them in batches.
+     * CSV needs a header row with username,password,name,age,email[,roles];
+     * JSON is an array of objects with the same fields. Roles are role names
+     * separated by ';' (CSV) or a JSON array, ROLE_USER when missing.
+     */
+    ProvisioningReport provision(InputStream input, Format format) throws IOException;
+}
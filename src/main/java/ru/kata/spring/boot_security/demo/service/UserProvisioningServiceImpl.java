@@ -0,0 +1,416 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.dto.ProvisioningReport;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk import pipeline: rows are parsed one at a time from the upload, validated,
+ * grouped into batches, hashed in parallel on a dedicated fork-join pool and written
+ * with one JDBC batch per table, each batch in its own transaction.
+ */
+@Service
+@Slf4j
+public class UserProvisioningServiceImpl implements UserProvisioningService, DisposableBean {
+
+    private static final String DEFAULT_ROLE = "ROLE_USER";
+
+    private final UserDAO userDAO;
+    private final RoleService roleService;
+    private final PasswordEncoder passwordEncoder;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final ForkJoinPool hashingPool;
+    private final int batchSize;
+    private final int maxReportedRejections;
+
+    /**
+     * Hashes go straight to the delegating encoder: the bounded request-path pool would
+     * shed an import, and the import already limits itself to {@code hashingPool}.
+     */
+    @Autowired
+    public UserProvisioningServiceImpl(UserDAO userDAO,
+                                       RoleService roleService,
+                                       DelegatingPasswordEncoder passwordEncoder,
+                                       Validator validator,
+                                       PlatformTransactionManager transactionManager,
+                                       ApplicationEventPublisher eventPublisher,
+                                       ObjectMapper objectMapper,
+                                       @Value("${app.provisioning.batch-size:500}") int batchSize,
+                                       @Value("${app.provisioning.hashing-parallelism:0}") int hashingParallelism,
+                                       @Value("${app.provisioning.max-reported-rejections:1000}") int maxReportedRejections) {
+        this.userDAO = userDAO;
+        this.roleService = roleService;
+        this.passwordEncoder = passwordEncoder;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxReportedRejections = maxReportedRejections;
+        this.hashingPool = new ForkJoinPool(hashingParallelism > 0
+                ? hashingParallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public ProvisioningReport provision(InputStream input, Format format) throws IOException {
+        log.info("Starting {} user import, batch size {}", format, batchSize);
+        ProvisioningReport report = new ProvisioningReport(maxReportedRejections);
+        Map<String, Role> rolesByName = roleService.getAllRoles().stream()
+                .collect(Collectors.toMap(Role::getName, role -> role));
+        Set<String> seenUsernames = new HashSet<>();
+        long start = System.currentTimeMillis();
+
+        try (RowReader reader = format == Format.JSON
+                ? new JsonRowReader(objectMapper.getFactory().createParser(input))
+                : new CsvRowReader(input)) {
+            List<ImportRow> batch = new ArrayList<>(batchSize);
+            ImportRow row;
+            while ((row = reader.next()) != null) {
+                report.rowRead();
+                String error = validate(row, rolesByName, seenUsernames);
+                if (error != null) {
+                    report.reject(row.line, row.username, error);
+                    continue;
+                }
+                batch.add(row);
+                if (batch.size() == batchSize) {
+                    importBatch(batch, rolesByName, report, start);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                importBatch(batch, rolesByName, report, start);
+            }
+        }
+
+        report.finish(System.currentTimeMillis() - start);
+        log.info("User import finished: {} rows, {} imported, {} rejected, {} rows/s",
+                report.getTotalRows(), report.getImportedRows(), report.getRejectedRows(),
+                String.format("%.1f", report.getRowsPerSecond()));
+        return report;
+    }
+
+    @Override
+    public void destroy() {
+        hashingPool.shutdownNow();
+    }
+
+    private String validate(ImportRow row, Map<String, Role> rolesByName, Set<String> seenUsernames) {
+        if (row.error != null) {
+            return row.error;
+        }
+        if (row.username == null || row.username.trim().isEmpty()) {
+            return "Username should not be empty";
+        }
+        if (row.password == null || row.password.isEmpty()) {
+            return "Password should not be empty";
+        }
+        String violation = firstViolation("name", row.name);
+        if (violation == null) {
+            violation = firstViolation("age", row.age);
+        }
+        if (violation == null) {
+            violation = firstViolation("email", row.email);
+        }
+        if (violation != null) {
+            return violation;
+        }
+        for (String roleName : row.roles) {
+            if (!rolesByName.containsKey(roleName)) {
+                return "Unknown role: " + roleName;
+            }
+        }
+        if (!seenUsernames.add(row.username)) {
+            return "Duplicate username in upload";
+        }
+        return null;
+    }
+
+    private String firstViolation(String property, Object value) {
+        Set<ConstraintViolation<User>> violations = validator.validateValue(User.class, property, value);
+        return violations.isEmpty() ? null : violations.iterator().next().getMessage();
+    }
+
+    private void importBatch(List<ImportRow> batch, Map<String, Role> rolesByName,
+                             ProvisioningReport report, long start) {
+        Set<String> existing = userDAO.getExistingUsernames(
+                batch.stream().map(row -> row.username).collect(Collectors.toList()));
+        List<ImportRow> fresh = new ArrayList<>(batch.size());
+        for (ImportRow row : batch) {
+            if (existing.contains(row.username)) {
+                report.reject(row.line, row.username, "Пользователь с таким логином уже существует");
+            } else {
+                fresh.add(row);
+            }
+        }
+        if (fresh.isEmpty()) {
+            return;
+        }
+
+        List<User> users;
+        try {
+            users = hashingPool.submit(() -> fresh.parallelStream()
+                    .map(row -> toUser(row, rolesByName))
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("User import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                userDAO.saveUsers(users);
+                users.forEach(user -> eventPublisher.publishEvent(UserChangedEvent.saved(user)));
+            });
+            report.imported(users.size());
+        } catch (RuntimeException e) {
+            log.error("Failed to import batch of {} users", users.size(), e);
+            fresh.forEach(row -> report.reject(row.line, row.username, "Batch failed: " + e.getMessage()));
+        }
+
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        log.info("Imported {} of {} rows read ({} rows/s)", report.getImportedRows(), report.getTotalRows(),
+                report.getImportedRows() * 1000 / elapsed);
+    }
+
+    private User toUser(ImportRow row, Map<String, Role> rolesByName) {
+        User user = new User(row.username, passwordEncoder.encode(row.password), row.name, row.age, row.email);
+        Set<Role> roles = new HashSet<>();
+        for (String roleName : row.roles) {
+            roles.add(rolesByName.get(roleName));
+        }
+        user.setRoles(roles);
+        return user;
+    }
+
+    private static class ImportRow {
+        long line;
+        String username;
+        String password;
+        String name;
+        int age;
+        String email;
+        List<String> roles = new ArrayList<>();
+        String error;
+    }
+
+    private interface RowReader extends Closeable {
+        /** Next row, {@code null} at the end of input. */
+        ImportRow next() throws IOException;
+    }
+
+    private static List<String> splitRoles(String value) {
+        List<String> roles = new ArrayList<>();
+        if (value != null) {
+            for (String role : value.split(";")) {
+                if (!role.trim().isEmpty()) {
+                    roles.add(role.trim());
+                }
+            }
+        }
+        if (roles.isEmpty()) {
+            roles.add(DEFAULT_ROLE);
+        }
+        return roles;
+    }
+
+    private static class CsvRowReader implements RowReader {
+
+        private final BufferedReader reader;
+        private final Map<String, Integer> columns = new HashMap<>();
+        private long lineNumber;
+
+        CsvRowReader(InputStream input) throws IOException {
+            this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+            String header = reader.readLine();
+            lineNumber++;
+            if (header == null) {
+                return;
+            }
+            if (header.startsWith("\uFEFF")) {
+                header = header.substring(1);
+            }
+            List<String> names = parseLine(header);
+            for (int i = 0; i < names.size(); i++) {
+                columns.put(names.get(i).trim().toLowerCase(), i);
+            }
+        }
+
+        @Override
+        public ImportRow next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                lineNumber++;
+                if (line == null) {
+                    return null;
+                }
+            } while (line.trim().isEmpty());
+
+            List<String> values = parseLine(line);
+            ImportRow row = new ImportRow();
+            row.line = lineNumber;
+            row.username = column(values, "username");
+            row.password = column(values, "password");
+            row.name = column(values, "name");
+            row.email = column(values, "email");
+            row.roles = splitRoles(column(values, "roles"));
+            String age = column(values, "age");
+            try {
+                row.age = age == null || age.isEmpty() ? 0 : Integer.parseInt(age.trim());
+            } catch (NumberFormatException e) {
+                row.error = "Age should be a number";
+            }
+            return row;
+        }
+
+        private String column(List<String> values, String name) {
+            Integer index = columns.get(name);
+            return index == null || index >= values.size() ? null : values.get(index);
+        }
+
+        /** Splits one CSV record; supports quoted values with commas and doubled quotes. */
+        private static List<String> parseLine(String line) {
+            List<String> values = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        current.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(current.toString());
+                    current.setLength(0);
+                } else {
+                    current.append(c);
+                }
+            }
+            values.add(current.toString());
+            return values;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private static class JsonRowReader implements RowReader {
+
+        private final JsonParser parser;
+        private long index;
+
+        JsonRowReader(JsonParser parser) throws IOException {
+            this.parser = parser;
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of users");
+            }
+        }
+
+        @Override
+        public ImportRow next() throws IOException {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.END_ARRAY) {
+                return null;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a user object at " + parser.getCurrentLocation());
+            }
+
+            ImportRow row = new ImportRow();
+            row.line = ++index;
+            String roles = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "username":
+                        row.username = parser.getValueAsString();
+                        break;
+                    case "password":
+                        row.password = parser.getValueAsString();
+                        break;
+                    case "name":
+                        row.name = parser.getValueAsString();
+                        break;
+                    case "email":
+                        row.email = parser.getValueAsString();
+                        break;
+                    case "age":
+                        if (value == JsonToken.VALUE_NUMBER_INT) {
+                            row.age = parser.getIntValue();
+                        } else {
+                            row.error = "Age should be a number";
+                        }
+                        break;
+                    case "roles":
+                        if (value == JsonToken.START_ARRAY) {
+                            StringBuilder names = new StringBuilder();
+                            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                                names.append(parser.getValueAsString()).append(';');
+                            }
+                            roles = names.toString();
+                        } else {
+                            roles = parser.getValueAsString();
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            row.roles = splitRoles(roles);
+            return row;
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.datasource.ReadFromPrimary;
+import ru.kata.spring.boot_security.demo.dto.UserDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index for the user search: a sorted map from lower-cased token to
+ * the ids of the users that have it, so a prefix lookup is one range scan. Tokens are
+ * the whole username, name and email plus their words (split on anything that is not a
+ * letter or digit), which makes "petrov", "mail" or "doe" find "Ivan Petrov",
+ * "x@mail.ru" or "john.doe" as well.
+ * <p>
+ * Built at startup and kept current from {@link UserChangedEvent}s like
+ * {@link UsernameIndex}. It only answers which ids match and in what order; the rows
+ * shown are read from the database.
+ */
+@Component
+public class UserSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSearchIndex.class);
+
+    private static final int FETCH_SIZE = 1000;
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Comparator<Match> RANKING = Comparator.comparingInt((Match match) -> match.score)
+            .thenComparing(match -> match.entry.username);
+
+    private final UserDAO userDAO;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ConcurrentSkipListMap<String, Set<Integer>> tokens = new ConcurrentSkipListMap<>();
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    @Autowired
+    public UserSearchIndex(UserDAO userDAO, PlatformTransactionManager transactionManager) {
+        this.userDAO = userDAO;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    // In a transaction, so the scroll's EntityManager and connection are released when it ends
+    @EventListener(ContextRefreshedEvent.class)
+    @ReadFromPrimary
+    public void load() {
+        long start = System.currentTimeMillis();
+        readOnlyTransaction.executeWithoutResult(status -> userDAO.scrollUsersWithRoleNames(FETCH_SIZE,
+                user -> put(user.getId(), user.getUsername(), user.getName(), user.getEmail())));
+        ready = true;
+        logger.info("User search index loaded: {} users, {} tokens in {} ms",
+                entries.size(), tokens.size(), System.currentTimeMillis() - start);
+    }
+
+    /** {@code false} until the startup load finished; callers fall back to the database. */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Ids of the users matching every word of the query, best match first: exact
+     * username, username prefix, exact word, word prefix; ties by username.
+     * <p>
+     * Candidates come from the term with the fewest postings and the other terms filter
+     * them, so no match is lost to a cut-off; only the best {@code offset + limit} are kept
+     * while ranking, so a short prefix costs one pass over its postings and no full sort.
+     */
+    public List<Integer> search(String query, int offset, int limit) {
+        String[] terms = terms(query);
+        if (terms.length == 0 || limit <= 0) {
+            return List.of();
+        }
+        NavigableMap<String, Set<Integer>> driver = null;
+        long driverPostings = Long.MAX_VALUE;
+        for (String term : terms) {
+            NavigableMap<String, Set<Integer>> range = tokens.subMap(term, true, term + Character.MAX_VALUE, false);
+            long postings = countPostings(range, driverPostings);
+            if (postings < driverPostings) {
+                driver = range;
+                driverPostings = postings;
+            }
+        }
+
+        int wanted = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        // Worst kept match on top, so it is the one dropped when a better one comes
+        PriorityQueue<Match> best = new PriorityQueue<>(RANKING.reversed());
+        Set<Integer> seen = new HashSet<>();
+        for (Set<Integer> ids : driver.values()) {
+            for (Integer id : ids) {
+                Entry entry = entries.get(id);
+                if (entry == null || !seen.add(id)) {
+                    continue;
+                }
+                int score = entry.score(terms);
+                if (score < 0) {
+                    continue;
+                }
+                best.add(new Match(entry, score));
+                if (best.size() > wanted) {
+                    best.poll();
+                }
+            }
+        }
+
+        List<Match> ranked = new ArrayList<>(best);
+        ranked.sort(RANKING);
+        List<Integer> result = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = offset; i < ranked.size(); i++) {
+            result.add(ranked.get(i).entry.id);
+        }
+        return result;
+    }
+
+    // Stops counting once it is clear the range is not the smallest one
+    private static long countPostings(NavigableMap<String, Set<Integer>> range, long stopAt) {
+        long count = 0;
+        for (Set<Integer> ids : range.values()) {
+            count += ids.size();
+            if (count >= stopAt) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        switch (event.getType()) {
+            case ALL_DELETED:
+                clear();
+                break;
+            case ROLES_CHANGED:
+                break;
+            case DELETED:
+                remove(event.getUserId());
+                break;
+            default:
+                if (event.getName() != null || event.getEmail() != null) {
+                    put(event.getUserId(), event.getUsername(), event.getName(), event.getEmail());
+                } else {
+                    // Events without the searchable fields (password rehash, ...): read them back
+                    UserDto user = userDAO.getUserDto(event.getUserId());
+                    if (user != null) {
+                        put(user.getId(), user.getUsername(), user.getName(), user.getEmail());
+                    }
+                }
+        }
+    }
+
+    // Writers are serialized (changes are rare next to searches, which take no lock), so
+    // a token set is never dropped as empty while another writer is adding to it.
+    private synchronized void put(int id, String username, String name, String email) {
+        Entry entry = new Entry(id, username, name, email);
+        Entry previous = entries.put(id, entry);
+        if (previous != null) {
+            unlink(previous);
+        }
+        for (String token : entry.tokens) {
+            tokens.computeIfAbsent(token, t -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    private synchronized void remove(int id) {
+        Entry previous = entries.remove(id);
+        if (previous != null) {
+            unlink(previous);
+        }
+    }
+
+    private synchronized void clear() {
+        entries.clear();
+        tokens.clear();
+    }
+
+    private void unlink(Entry entry) {
+        for (String token : entry.tokens) {
+            Set<Integer> ids = tokens.get(token);
+            if (ids != null) {
+                ids.remove(entry.id);
+                if (ids.isEmpty()) {
+                    tokens.remove(token);
+                }
+            }
+        }
+    }
+
+    static String[] terms(String query) {
+        if (query == null) {
+            return new String[0];
+        }
+        return Arrays.stream(query.toLowerCase(Locale.ROOT).trim().split("\\s+"))
+                .filter(term -> !term.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    private static final class Entry {
+
+        private final int id;
+        private final String username;
+        private final String lowerUsername;
+        private final String[] tokens;
+
+        private Entry(int id, String username, String name, String email) {
+            this.id = id;
+            this.username = username == null ? "" : username;
+            this.lowerUsername = this.username.toLowerCase(Locale.ROOT);
+            Set<String> all = new LinkedHashSet<>();
+            for (String field : new String[] {username, name, email}) {
+                if (field == null || field.isBlank()) {
+                    continue;
+                }
+                String lower = field.toLowerCase(Locale.ROOT).trim();
+                all.add(lower);
+                for (String word : WORD_SEPARATOR.split(lower)) {
+                    if (!word.isEmpty()) {
+                        all.add(word);
+                    }
+                }
+            }
+            this.tokens = all.toArray(new String[0]);
+        }
+
+        /** Sum of the term scores, -1 if any term matches no token. */
+        private int score(String[] terms) {
+            int score = 0;
+            for (String term : terms) {
+                int termScore = score(term);
+                if (termScore < 0) {
+                    return -1;
+                }
+                score += termScore;
+            }
+            return score;
+        }
+
+        /** Lower is better, -1 if the term matches no token. */
+        private int score(String term) {
+            if (lowerUsername.equals(term)) {
+                return 0;
+            }
+            if (lowerUsername.startsWith(term)) {
+                return 1;
+            }
+            int best = -1;
+            for (String token : tokens) {
+                if (token.equals(term)) {
+                    return 2;
+                }
+                if (token.startsWith(term)) {
+                    best = 3;
+                }
+            }
+            return best;
+        }
+    }
+
+    private static final class Match {
+
+        private final Entry entry;
+        private final int score;
+
+        private Match(Entry entry, int score) {
+            this.entry = entry;
+            this.score = score;
+        }
+    }
+}
@@ -1,20 +1,67 @@
 package ru.kata.spring.boot_security.demo.service;
 
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import ru.kata.spring.boot_security.demo.dto.KeysetPage;
+import ru.kata.spring.boot_security.demo.dto.UserDto;
+import ru.kata.spring.boot_security.demo.dto.UserPatch;
+import ru.kata.spring.boot_security.demo.dto.UserSearchPage;
+import ru.kata.spring.boot_security.demo.dto.UserSort;
 import ru.kata.spring.boot_security.demo.model.Role;
 import ru.kata.spring.boot_security.demo.model.User;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
-public interface UserService extends UserDetailsService {
+public interface UserService extends UserDetailsService, UserDetailsPasswordService {
 
     List<User> getAllUsers();
+
+    /**
+     * Page of users ordered by {@code sort}. Pass the previous page's last key as
+     * {@code after} or its first key as {@code before}; both {@code null} means the first page.
+     */
+    KeysetPage<User> getUsersPage(UserSort sort, String after, String before, int size);
+
+    /**
+     * Counter that grows after every committed user change; equal values mean the user
+     * data has not changed in between (as seen by this instance).
+     */
+    long getDataVersion();
+
+    /** Same paging as {@link #getUsersPage}, but as flat DTOs with role names. */
+    KeysetPage<UserDto> getUserDtoPage(UserSort sort, String after, String before, int size);
+
+    UserDto getUserDto(int id);
+
+    /**
+     * Users whose username, name or email (or a word of them) starts with each word of
+     * the query, best match first, with role names.
+     */
+    UserSearchPage searchUsers(String query, int page, int size);
     void deleteAllUsers();
     User getUser(int id);
     void save(User user);
     void save(User user, Set<Role> roles);
     void delete(int id);
+    /**
+     * Updates name, age, email, username and (if a new one is given) the password. If the
+     * user carries a version, it must be the current one, else an
+     * {@link org.springframework.orm.ObjectOptimisticLockingFailureException} is thrown.
+     */
     void update(User user);
+    /**
+     * Changes only the non-null fields of {@code patch} after checking its version, and
+     * returns the updated user, or {@code null} if there is none with this id. Throws
+     * {@link org.springframework.orm.ObjectOptimisticLockingFailureException} on a stale
+     * version and {@link org.springframework.dao.DuplicateKeyException} if the new
+     * username is taken.
+     */
+    UserDto patch(int id, UserPatch patch);
+    /** {@link #update(User)} plus {@link #assignRoles} in one transaction. */
+    void update(User user, Collection<Long> roleIds);
+    /** Makes the user's roles exactly {@code roleIds}, writing only the changed join rows. */
+    void assignRoles(int userId, Collection<Long> roleIds);
 
     User getUserByUsername(String username);
     User getUserByUsernameWithRoles(String username);
@@ -22,4 +69,9 @@ public interface UserService extends UserDetailsService {
     List<User> getAllUsersWithRoles();
     User getUserByIdWithRoles(int id);
     boolean existsByUsername(String username);
+    /** Those of {@code usernames} that are taken, in one query. */
+    Set<String> getExistingUsernames(Collection<String> usernames);
+
+    /** Whether another user than {@code userId} (0 for a new user) already has this username. */
+    boolean isUsernameTaken(String username, int userId);
 }
\ No newline at end of file
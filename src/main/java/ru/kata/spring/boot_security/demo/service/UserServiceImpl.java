@@ -4,17 +4,36 @@ import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.datasource.ReadFromPrimary;
+import ru.kata.spring.boot_security.demo.dto.KeysetPage;
+import ru.kata.spring.boot_security.demo.dto.UserDto;
+import ru.kata.spring.boot_security.demo.dto.UserPatch;
+import ru.kata.spring.boot_security.demo.dto.UserSearchPage;
+import ru.kata.spring.boot_security.demo.dto.UserSort;
 import ru.kata.spring.boot_security.demo.model.Role;
 import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.security.UserPrincipal;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -23,12 +42,22 @@ public class UserServiceImpl implements UserService {
     private final UserDAO userDAO;
     private PasswordEncoder passwordEncoder;
     private final RoleService roleService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UsernameIndex usernameIndex;
+    private final UserSearchIndex searchIndex;
+    private final AtomicLong dataVersion = new AtomicLong();
 
     @Autowired
     public UserServiceImpl(UserDAO userDAO,
-                           RoleService roleService) {
+                           RoleService roleService,
+                           ApplicationEventPublisher eventPublisher,
+                           UsernameIndex usernameIndex,
+                           UserSearchIndex searchIndex) {
         this.userDAO = userDAO;
         this.roleService = roleService;
+        this.eventPublisher = eventPublisher;
+        this.usernameIndex = usernameIndex;
+        this.searchIndex = searchIndex;
     }
 
     public PasswordEncoder getPasswordEncoder() {
@@ -47,8 +76,131 @@ public class UserServiceImpl implements UserService {
         return userDAO.getAllUsers();
     }
 
+    @Override
+    public long getDataVersion() {
+        return dataVersion.get();
+    }
+
+    // Bumped after commit, so a version is never paired with data that may still roll back.
+    // Bulk imports publish the same events and are counted too.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        dataVersion.incrementAndGet();
+    }
+
+    // The pages show role names too
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoleChanged(RoleChangedEvent event) {
+        dataVersion.incrementAndGet();
+    }
+
     @Override
     @Transactional(readOnly = true)
+    public KeysetPage<User> getUsersPage(UserSort sort, String after, String before, int size) {
+        log.debug("Getting users page: sort={}, after={}, before={}, size={}", sort, after, before, size);
+        boolean backwards = before != null && after == null;
+        String cursor = backwards ? before : after;
+
+        // One extra row tells whether there is anything beyond this page.
+        int limit = size + 1;
+        List<User> rows;
+        if (sort == UserSort.USERNAME) {
+            rows = backwards
+                    ? userDAO.getUsersBeforeUsername(cursor, limit)
+                    : userDAO.getUsersAfterUsername(cursor == null ? "" : cursor, limit);
+        } else {
+            int id = parseIdCursor(cursor);
+            rows = backwards ? userDAO.getUsersBeforeId(id, limit) : userDAO.getUsersAfterId(id, limit);
+        }
+
+        return toPage(rows, sort, size, cursor, backwards,
+                user -> sort == UserSort.USERNAME ? user.getUsername() : String.valueOf(user.getId()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public KeysetPage<UserDto> getUserDtoPage(UserSort sort, String after, String before, int size) {
+        log.debug("Getting user DTO page: sort={}, after={}, before={}, size={}", sort, after, before, size);
+        boolean backwards = before != null && after == null;
+        String cursor = backwards ? before : after;
+        if (sort == UserSort.ID && cursor != null) {
+            cursor = String.valueOf(parseIdCursor(cursor));
+        }
+
+        List<UserDto> rows = userDAO.getUserDtos(sort, cursor, backwards, size + 1);
+        KeysetPage<UserDto> page = toPage(rows, sort, size, cursor, backwards,
+                user -> sort == UserSort.USERNAME ? user.getUsername() : String.valueOf(user.getId()));
+        userDAO.fillRoleNames(page.getContent());
+        return page;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public UserDto getUserDto(int id) {
+        UserDto user = userDAO.getUserDto(id);
+        if (user != null) {
+            userDAO.fillRoleNames(List.of(user));
+        }
+        return user;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public UserSearchPage searchUsers(String query, int page, int size) {
+        String normalized = query == null ? "" : query.trim();
+        if (normalized.isEmpty()) {
+            return new UserSearchPage(new ArrayList<>(), normalized, 0, size, false);
+        }
+        log.debug("Searching users: query='{}', page={}, size={}", normalized, page, size);
+
+        // No result set reaches past Integer.MAX_VALUE rows; page * size must not wrap around
+        long offset = (long) page * size;
+        if (offset > Integer.MAX_VALUE) {
+            return new UserSearchPage(new ArrayList<>(), normalized, page, size, false);
+        }
+        // One extra row tells whether there is a next page.
+        List<UserDto> rows = searchIndex.isReady()
+                ? userDAO.getUserDtosByIds(searchIndex.search(normalized, (int) offset, size + 1))
+                : userDAO.searchUserDtosByTerms(Arrays.asList(UserSearchIndex.terms(normalized)), (int) offset, size + 1);
+        boolean more = rows.size() > size;
+        List<UserDto> content = new ArrayList<>(more ? rows.subList(0, size) : rows);
+        userDAO.fillRoleNames(content);
+        return new UserSearchPage(content, normalized, page, size, more);
+    }
+
+    /**
+     * Turns up to {@code size + 1} rows read in cursor direction into a page in display
+     * order; the extra row only tells whether there is anything beyond this page.
+     */
+    private static <T> KeysetPage<T> toPage(List<T> rows, UserSort sort, int size, String cursor,
+                                            boolean backwards, Function<T, String> cursorOf) {
+        boolean more = rows.size() > size;
+        List<T> content = new ArrayList<>(more ? rows.subList(0, size) : rows);
+        if (backwards) {
+            Collections.reverse(content);
+        }
+
+        boolean hasPrevious = backwards ? more : cursor != null;
+        boolean hasNext = !backwards ? more : cursor != null;
+        String previousCursor = content.isEmpty() ? null : cursorOf.apply(content.get(0));
+        String nextCursor = content.isEmpty() ? null : cursorOf.apply(content.get(content.size() - 1));
+        return new KeysetPage<>(content, sort, size, hasPrevious, hasNext, previousCursor, nextCursor);
+    }
+
+    private static int parseIdCursor(String cursor) {
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(cursor);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @ReadFromPrimary
     public User getUser(int id) {
         log.debug("Getting user by id: {}", id);
         return userDAO.getUser(id);
@@ -61,6 +213,7 @@ public class UserServiceImpl implements UserService {
 
         user.setPassword(passwordEncoder.encode(user.getPassword()));
         userDAO.save(user);
+        eventPublisher.publishEvent(UserChangedEvent.saved(user));
 
         log.info("User saved successfully: {}", user.getUsername());
     }
@@ -78,31 +231,123 @@ public class UserServiceImpl implements UserService {
         log.info("Updating user with id: {}", user.getId());
 
         User existingUser = userDAO.getUser(user.getId());
+        if (existingUser == null) {
+            log.warn("User with id {} not found, nothing to update", user.getId());
+            return;
+        }
+        checkVersion(existingUser, user.getVersion());
+        String previousUsername = existingUser.getUsername();
+        changePassword(existingUser, user.getPassword());
+
+        // Changes go onto the managed entity and are flushed as one UPDATE of the changed
+        // columns; roles are left alone (see assignRoles) instead of merged.
+        existingUser.setName(user.getName());
+        existingUser.setAge(user.getAge());
+        existingUser.setEmail(user.getEmail());
+        existingUser.setUsername(user.getUsername());
+
+        eventPublisher.publishEvent(UserChangedEvent.updated(existingUser, previousUsername));
+        log.info("User updated successfully: {}", user.getUsername());
+    }
 
+    @Override
+    @Transactional
+    public UserDto patch(int id, UserPatch patch) {
+        log.info("Patching user with id: {}", id);
 
-        if (existingUser != null) {
-            String rawPassword = user.getPassword();
+        // Usually a second-level cache hit, so the only statement may be the UPDATE itself
+        User existingUser = userDAO.getUser(id);
+        if (existingUser == null) {
+            return null;
+        }
+        checkVersion(existingUser, patch.getVersion());
+        String previousUsername = existingUser.getUsername();
 
-            if (rawPassword == null || rawPassword.isEmpty()) {
-                user.setPassword(existingUser.getPassword());
-            }
-            else if (passwordEncoder.matches(rawPassword, existingUser.getPassword())) {
-                user.setPassword(existingUser.getPassword());
-            } else {
-                user.setPassword(passwordEncoder.encode(rawPassword));
-                log.debug("Password changed for user: {}", user.getUsername());
+        if (patch.getUsername() != null && !patch.getUsername().equals(previousUsername)) {
+            if (isUsernameTaken(patch.getUsername(), id)) {
+                throw new DuplicateKeyException("Username is already taken: " + patch.getUsername());
             }
+            existingUser.setUsername(patch.getUsername());
+        }
+        if (patch.getName() != null) {
+            existingUser.setName(patch.getName());
+        }
+        if (patch.getAge() != null) {
+            existingUser.setAge(patch.getAge());
         }
+        if (patch.getEmail() != null) {
+            existingUser.setEmail(patch.getEmail());
+        }
+        changePassword(existingUser, patch.getPassword());
 
-        userDAO.update(user);
-        log.info("User updated successfully: {}", user.getUsername());
+        eventPublisher.publishEvent(UserChangedEvent.updated(existingUser, previousUsername));
+        // The DTO query flushes first, so it already sees the new row and version
+        return getUserDto(id);
+    }
+
+    /**
+     * Fails if the client's copy is older than the row. Hibernate checks the version again
+     * in the UPDATE's WHERE clause, which covers a change between this read and the flush.
+     */
+    private static void checkVersion(User existingUser, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(existingUser.getVersion())) {
+            log.info("Stale update of user {}: version {}, current {}",
+                    existingUser.getId(), expectedVersion, existingUser.getVersion());
+            throw new ObjectOptimisticLockingFailureException(User.class, existingUser.getId());
+        }
+    }
+
+    /**
+     * Hashes and sets a new password. Empty means "keep", and so does the stored hash
+     * itself (what an edit form sends back), so neither costs a hash or a matches() call.
+     */
+    private void changePassword(User existingUser, String password) {
+        if (password == null || password.isEmpty() || password.equals(existingUser.getPassword())) {
+            return;
+        }
+        existingUser.setPassword(passwordEncoder.encode(password));
+        log.debug("Password changed for user: {}", existingUser.getUsername());
+    }
+
+    @Override
+    @Transactional
+    public void update(User user, Collection<Long> roleIds) {
+        update(user);
+        assignRoles(user.getId(), roleIds);
+    }
+
+    @Override
+    @Transactional
+    public void assignRoles(int userId, Collection<Long> roleIds) {
+        Set<Long> wanted = roleService.getRolesByIds(roleIds).stream()
+                .map(Role::getId)
+                .collect(Collectors.toSet());
+        Set<Long> current = userDAO.getRoleIds(userId);
+
+        Set<Long> added = new HashSet<>(wanted);
+        added.removeAll(current);
+        Set<Long> removed = new HashSet<>(current);
+        removed.removeAll(wanted);
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+
+        log.info("Changing roles of user {}: +{} -{}", userId, added, removed);
+        userDAO.removeRoles(userId, removed);
+        userDAO.addRoles(userId, added);
+        // The join rows are not an entity change, so nothing else would bump the version
+        userDAO.incrementVersions(List.of(userId));
+        eventPublisher.publishEvent(
+                UserChangedEvent.rolesChanged(userId, "added=" + added + ", removed=" + removed));
     }
 
     @Override
     @Transactional
     public void delete(int id) {
         log.info("Deleting user with id: {}", id);
+        User user = userDAO.getUser(id);
         userDAO.delete(id);
+        eventPublisher.publishEvent(UserChangedEvent.deleted(id, user == null ? null : user.getUsername()));
         log.info("User deleted successfully: {}", id);
     }
 
@@ -111,6 +356,7 @@ public class UserServiceImpl implements UserService {
     public void deleteAllUsers() {
         log.warn("Deleting all users!");
         userDAO.deleteAllUsers();
+        eventPublisher.publishEvent(UserChangedEvent.allDeleted());
         log.warn("All users deleted");
     }
 
@@ -146,7 +392,23 @@ public class UserServiceImpl implements UserService {
     @Transactional(readOnly = true)
     public boolean existsByUsername(String username) {
         log.debug("Checking if username exists: {}", username);
-        return userDAO.existsByUsername(username);
+        return usernameIndex.mightContain(username) && userDAO.existsByUsername(username);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Set<String> getExistingUsernames(Collection<String> usernames) {
+        return userDAO.getExistingUsernames(usernames);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean isUsernameTaken(String username, int userId) {
+        if (!usernameIndex.mightContain(username)) {
+            return false;
+        }
+        Integer ownerId = userDAO.getUserIdByUsername(username);
+        return ownerId != null && ownerId != userId;
     }
 
     @Transactional
@@ -164,15 +426,29 @@ public class UserServiceImpl implements UserService {
 
     @Override
     @Transactional(readOnly = true)
+    @ReadFromPrimary
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         log.debug("Loading user by username for security: {}", username);
         User user = getUserByUsernameWithRoles(username);
         if (user == null) {
             throw new UsernameNotFoundException("User not found: " + username);
         }
-        log.debug("User found: {} with roles: {} password is \"user\": {}",
-                username, user.getRoles(), passwordEncoder.matches("user", user.getPassword()));
+        log.debug("User found: {} with roles: {}", username, user.getRoles());
 
-        return user;
+        return UserPrincipal.of(user);
+    }
+
+    /**
+     * Called by DaoAuthenticationProvider after a successful login when the stored hash
+     * uses an older format or a lower cost than the current encoder.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        UserPrincipal user = (UserPrincipal) userDetails;
+        log.info("Upgrading password hash for user: {}", user.getUsername());
+        userDAO.updatePassword(user.getId(), newPassword);
+        eventPublisher.publishEvent(UserChangedEvent.updated(user.getId(), user.getUsername(), null));
+        return user.withPassword(newPassword);
     }
 }
\ No newline at end of file
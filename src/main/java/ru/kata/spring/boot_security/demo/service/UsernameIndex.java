@@ -0,0 +1,98 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.datasource.ReadFromPrimary;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory set of all usernames, built at startup and kept current from
+ * {@link UserChangedEvent}s. It is used like a Bloom filter: "not present" is trusted,
+ * so checking a new username needs no query, while "present" is confirmed against the
+ * database. Writes from other nodes can make it miss a name; the unique constraint on
+ * user.username still rejects those inserts.
+ *
+ * <p>Keys are compared like MySQL's default collation (utf8mb4_0900_ai_ci) compares
+ * usernames: case- and accent-insensitive. "Admin" must be "present" when "admin" is
+ * taken, or the index would call a name free that the unique key then rejects; folding
+ * too much only costs a confirming query.
+ */
+@Component
+public class UsernameIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(UsernameIndex.class);
+
+    private static final int FETCH_SIZE = 1000;
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private final UserDAO userDAO;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Set<String> usernames = ConcurrentHashMap.newKeySet();
+    private volatile boolean ready;
+
+    @Autowired
+    public UsernameIndex(UserDAO userDAO, PlatformTransactionManager transactionManager) {
+        this.userDAO = userDAO;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    // In a transaction, so the scroll's EntityManager and connection are released when it ends
+    @EventListener(ContextRefreshedEvent.class)
+    @ReadFromPrimary
+    public void load() {
+        long start = System.currentTimeMillis();
+        readOnlyTransaction.executeWithoutResult(status ->
+                userDAO.scrollUsernames(FETCH_SIZE, username -> usernames.add(key(username))));
+        ready = true;
+        logger.info("Username index loaded: {} usernames in {} ms",
+                usernames.size(), System.currentTimeMillis() - start);
+    }
+
+    /** {@code false} means the username is certainly free; {@code true} must be confirmed. */
+    public boolean mightContain(String username) {
+        return !ready || usernames.contains(key(username));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        switch (event.getType()) {
+            case ALL_DELETED:
+                usernames.clear();
+                break;
+            case ROLES_CHANGED:
+                break;
+            case DELETED:
+                if (event.getUsername() != null) {
+                    usernames.remove(key(event.getUsername()));
+                }
+                break;
+            case UPDATED:
+                if (event.getPreviousUsername() != null && !event.getPreviousUsername().equals(event.getUsername())) {
+                    usernames.remove(key(event.getPreviousUsername()));
+                }
+                usernames.add(key(event.getUsername()));
+                break;
+            default:
+                usernames.add(key(event.getUsername()));
+        }
+    }
+
+    private static String key(String username) {
+        String decomposed = Normalizer.normalize(username, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+}
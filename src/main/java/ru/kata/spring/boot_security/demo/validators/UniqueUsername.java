@@ -4,12 +4,16 @@ import javax.validation.Constraint;
 import javax.validation.Payload;
 import java.lang.annotation.*;
 
+/**
+ * Class-level so the check knows the user's own id: keeping your own username on
+ * update is not a conflict. The violation is reported on the "username" field.
+ */
 @Documented
 @Constraint(validatedBy = UniqueUsernameValidator.class)
-@Target({ElementType.FIELD})
+@Target({ElementType.TYPE})
 @Retention(RetentionPolicy.RUNTIME)
 public @interface UniqueUsername {
     String message() default "Пользователь с таким логином уже существует";
     Class<?>[] groups() default {};
     Class<? extends Payload>[] payload() default {};
-}
\ No newline at end of file
+}
@@ -3,12 +3,9 @@ package ru.kata.spring.boot_security.demo.validators;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
-import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
-import ru.kata.spring.boot_security.demo.dao.UserDAOImpl;
 import ru.kata.spring.boot_security.demo.model.User;
 import ru.kata.spring.boot_security.demo.service.UserService;
 
@@ -17,7 +14,7 @@ import javax.validation.ConstraintValidatorContext;
 
 @Component
 public class UniqueUsernameValidator implements
-        ConstraintValidator<UniqueUsername, String>,
+        ConstraintValidator<UniqueUsername, User>,
         ApplicationContextAware {
 
     private static final Logger logger =
@@ -31,19 +28,21 @@ public class UniqueUsernameValidator implements
     }
 
     @Override
-    public boolean isValid(String username, ConstraintValidatorContext context) {
-        logger.info("checking isValid username = {}", username);
+    public boolean isValid(User user, ConstraintValidatorContext context) {
+        String username = user.getUsername();
         if (username == null || username.trim().isEmpty()) {
             return true;
         }
 
-        if ("admin".equals(username) || "user".equals(username)) {
-            logger.info("Skipping validation for default user and admin: {}", username);
-            return true;
-        }
-
         UserService userService = applicationContext.getBean(UserService.class);
-        logger.info("username unique? -> {}", !userService.existsByUsername(username));
-        return !userService.existsByUsername(username);
+        boolean taken = userService.isUsernameTaken(username, user.getId());
+        logger.debug("username '{}' taken? -> {}", username, taken);
+        if (taken) {
+            context.disableDefaultConstraintViolation();
+            context.buildConstraintViolationWithTemplate(context.getDefaultConstraintMessageTemplate())
+                    .addPropertyNode("username")
+                    .addConstraintViolation();
+        }
+        return !taken;
     }
-}
\ No newline at end of file
+}
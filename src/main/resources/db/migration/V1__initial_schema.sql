@@ -0,0 +1,30 @@
+-- Schema as hibernate.ddl-auto=update left it before the migrations, constraint names
+-- included. Databases created that way are taken as this version
+-- (spring.flyway.baseline-version=1) and only get the later migrations, so everything
+-- added since goes into V2 and up.
+
+CREATE TABLE role (
+    role_id BIGINT NOT NULL AUTO_INCREMENT,
+    name    VARCHAR(255),
+    PRIMARY KEY (role_id),
+    CONSTRAINT UK_8sewwnpamngi6b1dwaa88askk UNIQUE (name)
+) ENGINE = InnoDB;
+
+CREATE TABLE user (
+    user_id  INTEGER      NOT NULL AUTO_INCREMENT,
+    age      INTEGER,
+    email    VARCHAR(255),
+    name     VARCHAR(255),
+    password VARCHAR(255) NOT NULL,
+    username VARCHAR(255) NOT NULL,
+    PRIMARY KEY (user_id),
+    CONSTRAINT UK_sb8bbouer5wak8vyiiy4pf2bx UNIQUE (username)
+) ENGINE = InnoDB;
+
+CREATE TABLE users_roles (
+    user_id INTEGER NOT NULL,
+    role_id BIGINT  NOT NULL,
+    PRIMARY KEY (user_id, role_id),
+    CONSTRAINT FKgd3iendaoyh04b95ykqise6qh FOREIGN KEY (user_id) REFERENCES user (user_id),
+    CONSTRAINT FKt4v0rrweyk393bdgt107vdx0x FOREIGN KEY (role_id) REFERENCES role (role_id)
+) ENGINE = InnoDB;
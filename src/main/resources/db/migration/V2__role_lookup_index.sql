@@ -0,0 +1,7 @@
+-- Role-based lookups (users holding a role, bulk grant/revoke, role delete) filter
+-- users_roles by role_id; the primary key starts with user_id. (role_id, user_id) answers
+-- them from the index alone and also serves the role foreign key.
+CREATE INDEX idx_users_roles_role_user ON users_roles (role_id, user_id);
+
+-- Every role has a name: lookups and the role registry are keyed by it
+ALTER TABLE role MODIFY name VARCHAR(255) NOT NULL;
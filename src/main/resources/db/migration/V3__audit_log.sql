@@ -0,0 +1,10 @@
+-- Append-only audit trail of admin actions (written by AuditTrail)
+CREATE TABLE audit_log (
+    audit_id    BIGINT        NOT NULL AUTO_INCREMENT,
+    action      VARCHAR(40)   NOT NULL,
+    actor       VARCHAR(100)  NOT NULL,
+    details     VARCHAR(1000),
+    entity_id   BIGINT,
+    occurred_at DATETIME(6)   NOT NULL,
+    PRIMARY KEY (audit_id)
+) ENGINE = InnoDB;
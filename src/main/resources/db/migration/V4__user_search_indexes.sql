@@ -0,0 +1,3 @@
+-- Prefix LIKE lookups of the user search fallback; username is covered by its unique key
+CREATE INDEX idx_user_name ON user (name);
+CREATE INDEX idx_user_email ON user (email);
@@ -0,0 +1,2 @@
+-- Optimistic locking of user edits (User.version); existing rows start at 0
+ALTER TABLE user ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
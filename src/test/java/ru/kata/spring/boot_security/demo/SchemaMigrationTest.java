@@ -0,0 +1,108 @@
+package ru.kata.spring.boot_security.demo;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.h2.jdbcx.JdbcDataSource;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.Test;
+import ru.kata.spring.boot_security.demo.model.AuditEntry;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the migrations in db/migration against H2 in MySQL mode, without a Spring context
+ * (the test contexts build their schema with create-drop), and checks that Hibernate
+ * validates the entities against the result.
+ */
+class SchemaMigrationTest {
+
+    @Test
+    void migratesEmptyDatabaseToSchemaTheEntitiesValidate() throws SQLException {
+        DataSource dataSource = dataSource("migration_fresh");
+        Flyway flyway = flyway(dataSource).load();
+
+        assertEquals(5, flyway.migrate().migrationsExecuted);
+        assertEquals("5", flyway.info().current().getVersion().getVersion());
+        assertTrue(indexExists(dataSource, "users_roles", "idx_users_roles_role_user"));
+
+        validateEntities(dataSource);
+        assertEquals(0, flyway.migrate().migrationsExecuted);
+    }
+
+    @Test
+    void baselinesSchemaLeftByDdlUpdateAndAppliesOnlyLaterMigrations() throws SQLException {
+        DataSource dataSource = dataSource("migration_baseline");
+        // A database of the release before the migrations: what ddl-auto=update created, with data
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("RUNSCRIPT FROM 'classpath:db/ddl-update-schema.sql'");
+            statement.execute("INSERT INTO role (name) VALUES ('ROLE_USER')");
+            statement.execute("INSERT INTO user (age, email, name, password, username)"
+                    + " VALUES (30, 'old@mail.ru', 'Old', '{bcrypt}x', 'old')");
+            statement.execute("INSERT INTO users_roles (user_id, role_id) VALUES (1, 1)");
+        }
+
+        Flyway flyway = flyway(dataSource).baselineOnMigrate(true).baselineVersion("1").load();
+        assertEquals(4, flyway.migrate().migrationsExecuted);
+        assertTrue(indexExists(dataSource, "users_roles", "idx_users_roles_role_user"));
+        assertTrue(indexExists(dataSource, "user", "idx_user_name"));
+
+        validateEntities(dataSource);
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT version FROM user WHERE username = 'old'")) {
+            assertTrue(resultSet.next());
+            assertEquals(0, resultSet.getLong(1));
+        }
+    }
+
+    private static DataSource dataSource(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        return dataSource;
+    }
+
+    private static FluentConfiguration flyway(DataSource dataSource) {
+        return Flyway.configure().dataSource(dataSource).locations("classpath:db/migration");
+    }
+
+    private static boolean indexExists(DataSource dataSource, String table, String index) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT COUNT(*) FROM information_schema.indexes WHERE table_name = ? AND index_name = ?")) {
+            statement.setString(1, table);
+            statement.setString(2, index);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getInt(1) > 0;
+            }
+        }
+    }
+
+    // Throws SchemaManagementException if a table or column the entities map is missing or of another type
+    private static void validateEntities(DataSource dataSource) {
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(Role.class)
+                .addAnnotatedClass(AuditEntry.class)
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.hbm2ddl.auto", "validate")
+                .setProperty("hibernate.cache.use_second_level_cache", "false")
+                .setProperty("javax.persistence.validation.mode", "none");
+        configuration.getProperties().put("hibernate.connection.datasource", dataSource);
+        try (SessionFactory ignored = configuration.buildSessionFactory()) {
+            // Built means validated
+        }
+    }
+}
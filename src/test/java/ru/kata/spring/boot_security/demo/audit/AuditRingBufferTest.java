@@ -0,0 +1,77 @@
+package ru.kata.spring.boot_security.demo.audit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuditRingBufferTest {
+
+    @Test
+    void rejectsWhenFullAndKeepsOrder() {
+        AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+
+        assertEquals(0, buffer.poll());
+        assertTrue(buffer.offer(4));
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, buffer.drainTo(drained, 10));
+        assertEquals(List.of(1, 2, 3, 4), drained);
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    void concurrentProducersAndConsumerLoseNothing() throws Exception {
+        AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(64);
+        int producers = 4;
+        int perProducer = 20_000;
+        AtomicInteger dropped = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(producers + 1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int base = p * perProducer;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perProducer; i++) {
+                        if (!buffer.offer(base + i)) {
+                            dropped.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            Future<Set<Integer>> consumer = executor.submit(() -> {
+                Set<Integer> seen = new HashSet<>();
+                List<Integer> batch = new ArrayList<>();
+                while (!futures.stream().allMatch(Future::isDone) || buffer.size() > 0) {
+                    batch.clear();
+                    buffer.drainTo(batch, 16);
+                    for (Integer value : batch) {
+                        assertTrue(seen.add(value), "duplicate " + value);
+                    }
+                }
+                return seen;
+            });
+
+            Set<Integer> seen = consumer.get(30, TimeUnit.SECONDS);
+            assertEquals(producers * perProducer, seen.size() + dropped.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ru.kata.spring.boot_security.demo.audit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.kata.spring.boot_security.demo.dao.AuditDAO;
+import ru.kata.spring.boot_security.demo.model.AuditEntry;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.RoleService;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AuditTrailTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private AuditTrail auditTrail;
+
+    @Autowired
+    private AuditDAO auditDAO;
+
+    @Test
+    void writesUserAndRoleChangesInOrder() {
+        Role admin = roleService.getRoleByName("ROLE_ADMIN");
+        User user = new User("audited", "secret", "Audited", 40, "audited@mail.ru");
+        userService.save(user, Set.of(roleService.getRoleByName("ROLE_USER")));
+        userService.assignRoles(user.getId(), List.of(admin.getId()));
+        userService.delete(user.getId());
+
+        Role role = new Role("ROLE_AUDIT_TEST");
+        roleService.saveRole(role);
+        roleService.deleteRole(role.getId());
+        auditTrail.flush();
+
+        List<AuditEntry> userEntries = auditDAO.getEntriesForEntity("USER_", user.getId());
+        assertEquals(List.of("USER_SAVED", "USER_ROLES_CHANGED", "USER_DELETED"),
+                userEntries.stream().map(AuditEntry::getAction).collect(Collectors.toList()));
+        assertTrue(userEntries.get(1).getDetails().contains("added=[" + admin.getId() + "]"));
+        assertEquals(AuditTrail.SYSTEM_ACTOR, userEntries.get(0).getActor());
+
+        List<AuditEntry> roleEntries = auditDAO.getEntriesForEntity("ROLE_", role.getId());
+        assertEquals(List.of("ROLE_SAVED", "ROLE_DELETED"),
+                roleEntries.stream().map(AuditEntry::getAction).collect(Collectors.toList()));
+        assertEquals("name ROLE_AUDIT_TEST", roleEntries.get(1).getDetails());
+        assertEquals(0, auditTrail.getBufferDepth());
+        assertEquals(0, auditTrail.getDroppedCount());
+    }
+}
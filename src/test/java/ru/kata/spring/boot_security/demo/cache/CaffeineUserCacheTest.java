@@ -0,0 +1,58 @@
+package ru.kata.spring.boot_security.demo.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.security.UserPrincipal;
+import ru.kata.spring.boot_security.demo.service.RoleService;
+import ru.kata.spring.boot_security.demo.service.UserChangedEvent;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CaffeineUserCacheTest {
+
+    @Autowired
+    private CaffeineUserCache userCache;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Test
+    void writesEvictCachedPrincipal() {
+        User user = new User("cached", "secret", "Cached", 30, "cached@mail.ru");
+        userService.save(user, Set.of(roleService.getRoleByName("ROLE_USER")));
+
+        userCache.putUserInCache(userService.loadUserByUsername("cached"));
+        assertNotNull(userCache.getUserFromCache("cached"));
+
+        User changed = userService.getUserByUsernameWithRoles("cached");
+        changed.setUsername("renamed");
+        changed.setPassword("");
+        userService.update(changed);
+        assertNull(userCache.getUserFromCache("cached"));
+
+        userCache.putUserInCache(userService.loadUserByUsername("renamed"));
+        userService.delete(changed.getId());
+        assertNull(userCache.getUserFromCache("renamed"));
+    }
+
+    @Test
+    void roleChangeWithUsernameEvictsByKey() {
+        userCache.putUserInCache(new UserPrincipal(Integer.MAX_VALUE, "by-key", "hash", List.of("ROLE_USER")));
+        // An id nothing is cached under: only the username can find the entry
+        userCache.onUserChanged(UserChangedEvent.rolesChanged(-1, "by-key", "added=[1]"));
+        assertNull(userCache.getUserFromCache("by-key"));
+    }
+}
@@ -0,0 +1,83 @@
+package ru.kata.spring.boot_security.demo.cache;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.RoleService;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class HibernateCacheStatisticsTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private UserDAO userDAO;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private HibernateCacheStatistics cacheStatistics;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void resetStatistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void repeatedReadsAreServedFromCache() {
+        User admin = userService.getUserByUsernameWithRoles("admin");
+        assertNotNull(admin);
+        userService.getUser(admin.getId());
+        statistics.clear();
+
+        User cached = userService.getUserByUsernameWithRoles("admin");
+        assertEquals(2, cached.getRoles().size());
+        assertEquals("admin", userService.getUser(admin.getId()).getUsername());
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertTrue(cacheStatistics.getQueryCacheHitCount() > 0);
+        assertTrue(cacheStatistics.region("user").getHitCount() > 0);
+        assertTrue(cacheStatistics.region("user.roles").getHitCount() > 0);
+    }
+
+    @Test
+    void jdbcBatchInsertInvalidatesCachedLookups() {
+        assertNull(userService.getUserByUsernameWithRoles("cache_batch"));
+
+        User user = new User("cache_batch", "{noop}x", "Batch", 30, "batch@mail.ru");
+        user.setRoles(Set.of(roleService.getRoleByName("ROLE_USER")));
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> userDAO.saveUsers(List.of(user)));
+
+        assertNotNull(userService.getUserByUsernameWithRoles("cache_batch"));
+    }
+}
@@ -0,0 +1,38 @@
+package ru.kata.spring.boot_security.demo.cache;
+
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.ehcache.xml.XmlConfiguration;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.UUID;
+
+/**
+ * Gives every test context its own JCache CacheManager built from ehcache.xml. The manager
+ * the provider returns for the configured URI is shared by the whole JVM, and each context
+ * has its own database (see application-test.properties), so a shared region would hand a
+ * context entries another context cached for the same ids. Hibernate closes the manager
+ * with its SessionFactory.
+ */
+@Configuration
+@Profile("test")
+public class TestCacheManagerConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer contextCacheManager() {
+        return properties -> {
+            EhcacheCachingProvider provider = (EhcacheCachingProvider)
+                    Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+            XmlConfiguration configuration = new XmlConfiguration(
+                    TestCacheManagerConfig.class.getResource("/ehcache.xml"),
+                    TestCacheManagerConfig.class.getClassLoader());
+            properties.put(ConfigSettings.CACHE_MANAGER,
+                    provider.getCacheManager(URI.create("urn:test-context:" + UUID.randomUUID()), configuration));
+        };
+    }
+}
@@ -0,0 +1,54 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class DataInitializerTest {
+
+    @Autowired
+    private DataInitializer dataInitializer;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void restartChecksDefaultsWithOneQueryAndWritesNothing() {
+        int admin = userService.getUserByUsername("admin").getId();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        dataInitializer.run();
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityInsertCount());
+        assertEquals(admin, userService.getUserByUsername("admin").getId());
+    }
+
+    @Test
+    void defaultUserInsertedByAnotherNodeMeanwhileIsTolerated() {
+        int user = userService.getUserByUsername("user").getId();
+
+        // The node that lost the first-boot race: its check found no "user", then another
+        // node inserted it, so this insert hits the unique key
+        assertDoesNotThrow(() -> dataInitializer.createDefaultUser());
+
+        assertEquals(user, userService.getUserByUsername("user").getId());
+        assertEquals(Set.of("user"), userService.getExistingUsernames(Set.of("user")));
+    }
+}
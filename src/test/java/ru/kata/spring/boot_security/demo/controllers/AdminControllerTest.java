@@ -0,0 +1,111 @@
+package ru.kata.spring.boot_security.demo.controllers;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.security.UserPrincipal;
+import ru.kata.spring.boot_security.demo.service.RoleService;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class AdminControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void adminPageQueryCountDoesNotGrowWithUsers() throws Exception {
+        UserDetails admin = userService.loadUserByUsername("admin");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        addUsers("grid_a", 3);
+        statistics.clear();
+        mvc.perform(get("/admin?size=100").with(user(admin)))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("grid_a2")));
+        long fewUsers = statistics.getPrepareStatementCount();
+
+        addUsers("grid_b", 30);
+        statistics.clear();
+        mvc.perform(get("/admin?size=100").with(user(admin)))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("grid_b29")));
+
+        assertEquals(2, fewUsers);
+        assertEquals(fewUsers, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getCollectionFetchCount());
+    }
+
+    @Test
+    void searchBoxShowsRankedMatches() throws Exception {
+        UserDetails admin = userService.loadUserByUsername("admin");
+        addUsers("find_me", 2);
+
+        mvc.perform(get("/admin?q=find_me1").with(user(admin)))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Search results")))
+                .andExpect(content().string(containsString("find_me1@mail.ru")))
+                .andExpect(content().string(not(containsString("find_me0@mail.ru"))))
+                // Bulk role options carry the generated ids
+                .andExpect(content().string(containsString("<option value=\""
+                        + roleService.getRoleByName("ROLE_ADMIN").getId() + "\">ADMIN</option>")));
+    }
+
+    @Test
+    void bulkDeleteReportsEachIdAndKeepsCurrentAdmin() throws Exception {
+        UserPrincipal admin = (UserPrincipal) userService.loadUserByUsername("admin");
+        User doomed = new User("bulk_web", "secret", "Bulk", 30, "bulk_web@mail.ru");
+        userService.save(doomed);
+
+        mvc.perform(post("/admin/users/bulk").with(user(admin)).with(csrf())
+                        .param("action", "delete")
+                        .param("ids", String.valueOf(doomed.getId()), String.valueOf(admin.getId())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results['" + doomed.getId() + "']").value("DELETED"))
+                .andExpect(jsonPath("$.results['" + admin.getId() + "']").value("SKIPPED"));
+
+        mvc.perform(post("/admin/users/bulk").with(user(admin)).with(csrf())
+                        .param("action", "grant")
+                        .param("ids", String.valueOf(admin.getId())))
+                .andExpect(status().isBadRequest());
+    }
+
+    private void addUsers(String prefix, int count) {
+        for (int i = 0; i < count; i++) {
+            userService.save(new User(prefix + i, "secret", "Grid", 30, prefix + i + "@mail.ru"),
+                    Set.of(roleService.getRoleByName("ROLE_USER")));
+        }
+    }
+}
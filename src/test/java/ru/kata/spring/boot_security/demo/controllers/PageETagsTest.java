@@ -0,0 +1,101 @@
+package ru.kata.spring.boot_security.demo.controllers;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.RoleService;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class PageETagsTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void unchangedAdminPageIsNotModifiedWithoutQueries() throws Exception {
+        UserDetails admin = userService.loadUserByUsername("admin");
+        MockHttpSession session = new MockHttpSession();
+
+        MvcResult first = mvc.perform(get("/admin").session(session).with(user(admin)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "private, no-cache"))
+                .andReturn();
+        String etag = first.getResponse().getHeader("ETag");
+        assertNotNull(etag);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mvc.perform(get("/admin").session(session).with(user(admin)).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        mvc.perform(get("/admin?sort=username").session(session).with(user(admin)).header("If-None-Match", etag))
+                .andExpect(status().isOk());
+
+        userService.save(new User("etag-user", "secret", "Etag", 25, "etag@mail.ru"));
+        MvcResult changed = mvc.perform(get("/admin").session(session).with(user(admin)).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertNotEquals(etag, changed.getResponse().getHeader("ETag"));
+    }
+
+    @Test
+    void roleChangeInvalidatesThePageToo() throws Exception {
+        UserDetails admin = userService.loadUserByUsername("admin");
+        MockHttpSession session = new MockHttpSession();
+        String etag = mvc.perform(get("/admin").session(session).with(user(admin)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        Role role = new Role("ROLE_ETAG");
+        roleService.saveRole(role);
+        mvc.perform(get("/admin").session(session).with(user(admin)).header("If-None-Match", etag))
+                .andExpect(status().isOk());
+        roleService.deleteRole(role.getId());
+    }
+
+    @Test
+    void userPageIsConditionalToo() throws Exception {
+        UserDetails user = userService.loadUserByUsername("user");
+        MockHttpSession session = new MockHttpSession();
+
+        String etag = mvc.perform(get("/user").session(session).with(user(user)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mvc.perform(get("/user").session(session).with(user(user)).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+    }
+}
@@ -0,0 +1,93 @@
+package ru.kata.spring.boot_security.demo.controllers;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class UserApiControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void pagesUsersAsFlatJson() throws Exception {
+        mvc.perform(get("/api/users?size=1").with(httpBasic("admin", "admin")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].username").value("admin"))
+                .andExpect(jsonPath("$.content[0].roles", hasSize(2)))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.nextCursor").value("1"))
+                .andExpect(content().string(not(containsString("password"))));
+
+        mvc.perform(get("/api/users?size=1&after=1").with(httpBasic("admin", "admin")))
+                .andExpect(jsonPath("$.content[0].username").value("user"))
+                .andExpect(jsonPath("$.hasPrevious").value(true));
+    }
+
+    @Test
+    void selectsFields() throws Exception {
+        mvc.perform(get("/api/users/1?fields=id,username,bogus").with(httpBasic("admin", "admin")))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"id\":1,\"username\":\"admin\"}", true));
+
+        mvc.perform(get("/api/users/999").with(httpBasic("admin", "admin")))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void listsRolesAndRequiresAdmin() throws Exception {
+        mvc.perform(get("/api/roles").with(httpBasic("admin", "admin")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name").value(org.hamcrest.Matchers.containsInAnyOrder("ROLE_ADMIN", "ROLE_USER")));
+
+        mvc.perform(get("/api/roles")).andExpect(status().isUnauthorized());
+        mvc.perform(get("/api/roles").with(httpBasic("user", "user"))).andExpect(status().isForbidden());
+    }
+
+    @Test
+    void patchesWithVersionAndRejectsStaleOnes() throws Exception {
+        User saved = new User("api-patch", "secret", "Api", 25, "api@mail.ru");
+        userService.save(saved);
+        long version = userService.getUserDto(saved.getId()).getVersion();
+        String body = "{\"name\":\"Api Patched\",\"version\":" + version + "}";
+
+        mvc.perform(patch("/api/users/" + saved.getId()).with(httpBasic("admin", "admin"))
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Api Patched"))
+                .andExpect(jsonPath("$.age").value(25))
+                .andExpect(jsonPath("$.version").value(version + 1));
+
+        mvc.perform(patch("/api/users/" + saved.getId()).with(httpBasic("admin", "admin"))
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.version").value(version + 1));
+
+        mvc.perform(patch("/api/users/" + saved.getId()).with(httpBasic("admin", "admin"))
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"name\":\"No version\"}"))
+                .andExpect(status().isBadRequest());
+    }
+}
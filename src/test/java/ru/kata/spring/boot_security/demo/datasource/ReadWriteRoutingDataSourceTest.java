@@ -0,0 +1,157 @@
+package ru.kata.spring.boot_security.demo.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two embedded H2 databases: the usual test primary and a replica that gets a snapshot
+ * of it before each test and then falls behind. A second replica URL points to a
+ * database that does not exist and must be skipped by the health check.
+ */
+@SpringBootTest(properties = {
+        "app.datasource.replica.urls=" + ReadWriteRoutingDataSourceTest.REPLICA_URL
+                + ",jdbc:h2:mem:missing-replica;IFEXISTS=TRUE",
+        "app.datasource.replica.health-check-interval=1h",
+        "app.datasource.replica.connection-timeout=250ms"
+})
+@ActiveProfiles("test")
+class ReadWriteRoutingDataSourceTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ReadWriteRoutingDataSource routingDataSource;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DataSourceProperties primaryProperties;
+
+    @BeforeEach
+    void copyPrimaryToReplica() throws Exception {
+        try (Connection primary = DriverManager.getConnection(primaryProperties.getUrl(), "sa", "");
+             Statement statement = primary.createStatement()) {
+            statement.execute("SCRIPT TO 'target/replica-snapshot.sql'");
+        }
+        try (Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "");
+             Statement statement = replica.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+            statement.execute("RUNSCRIPT FROM 'target/replica-snapshot.sql'");
+        }
+        routingDataSource.checkReplicas();
+    }
+
+    @Test
+    void readOnlyTransactionsUseTheHealthyReplica() {
+        assertEquals(1, routingDataSource.getHealthyReplicaCount());
+        long primaryBefore = routingDataSource.getPrimaryConnectionCount();
+        long replicaBefore = routingDataSource.getReplicaConnectionCount();
+
+        User user = new User("replica-lag", "secret", "Lag", 30, "lag@mail.ru");
+        userService.save(user);
+        assertTrue(routingDataSource.getPrimaryConnectionCount() > primaryBefore);
+
+        // The replica has not seen the insert, so a read routed there cannot find it.
+        assertNull(userService.getUserDto(user.getId()));
+        assertNotNull(userService.getUserDto(1));
+        assertEquals(replicaBefore + 2, routingDataSource.getReplicaConnectionCount());
+    }
+
+    @Test
+    void readsAfterAWriteInTheSameRequestStayOnThePrimary() {
+        ReadWriteRoutingDataSource.beginRequest(false);
+        User user;
+        try {
+            user = new User("replica-ryw", "secret", "Ryw", 31, "ryw@mail.ru");
+            userService.save(user);
+            assertNotNull(userService.getUserDto(user.getId()));
+        } finally {
+            assertTrue(ReadWriteRoutingDataSource.endRequest());
+        }
+
+        ReadWriteRoutingDataSource.beginRequest(true);
+        try {
+            assertNotNull(userService.getUserDto(user.getId()));
+        } finally {
+            ReadWriteRoutingDataSource.endRequest();
+        }
+        assertNull(userService.getUserDto(user.getId()));
+    }
+
+    @Test
+    void replicaReadsDoNotFillTheCachesAndLoginReadsThePrimary() {
+        User current = userService.getUserByUsername("user");
+        User edited = new User("user", "", "Renamed On Primary", current.getAge(), current.getEmail());
+        edited.setId(current.getId());
+        edited.setVersion(current.getVersion());
+        userService.update(edited);
+        // As after any write's after-commit eviction
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        cache.evictEntityData(User.class, current.getId());
+
+        long replicaBefore = routingDataSource.getReplicaConnectionCount();
+        User fromReplica = userService.getAllUsers().stream()
+                .filter(user -> user.getId() == current.getId())
+                .findFirst().orElseThrow();
+        assertEquals(current.getName(), fromReplica.getName());
+        assertEquals(replicaBefore + 1, routingDataSource.getReplicaConnectionCount());
+        assertFalse(cache.containsEntity(User.class, current.getId()));
+
+        assertEquals("Renamed On Primary", userService.getUser(current.getId()).getName());
+        assertNotNull(userService.loadUserByUsername("user"));
+        assertEquals(replicaBefore + 1, routingDataSource.getReplicaConnectionCount());
+    }
+
+    @Test
+    void deadReplicaFailsOverToThePrimaryWithinTheConnectionTimeout() throws Exception {
+        HikariDataSource dead = new HikariDataSource();
+        dead.setJdbcUrl("jdbc:h2:mem:dead-replica;IFEXISTS=TRUE");
+        dead.setUsername("sa");
+        dead.setConnectionTimeout(250);
+        dead.setInitializationFailTimeout(-1);
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(
+                new DriverManagerDataSource(primaryProperties.getUrl(), "sa", ""), Map.of("dead", dead), Duration.ofHours(1));
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        long start = System.nanoTime();
+        try (Connection connection = routing.getConnection()) {
+            assertTrue(connection.isValid(1));
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+            routing.destroy();
+        }
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+        assertEquals(0, routing.getHealthyReplicaCount());
+        // The replica pools are not beans; the routing data source closes them
+        assertTrue(dead.isClosed());
+    }
+}
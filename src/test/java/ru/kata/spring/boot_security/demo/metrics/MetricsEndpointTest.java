@@ -0,0 +1,54 @@
+package ru.kata.spring.boot_security.demo.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+// Test contexts only get a simple registry unless export is switched back on
+@AutoConfigureMetrics
+class MetricsEndpointTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Test
+    void exposesLayerTimersAndPoolGaugesForPrometheus() throws Exception {
+        // A Basic login runs loadUserByUsername, bcrypt matches and the DAO queries.
+        mvc.perform(get("/api/users?size=1").with(httpBasic("admin", "admin")))
+                .andExpect(status().isOk());
+
+        mvc.perform(get("/actuator/prometheus").with(httpBasic("admin", "admin")))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("app_dao_seconds_bucket{")))
+                .andExpect(content().string(containsString("dao=\"UserDAOImpl\"")))
+                .andExpect(content().string(containsString("app_password_hashing_seconds_count{")))
+                .andExpect(content().string(containsString("operation=\"matches\"")))
+                .andExpect(content().string(containsString("app_security_load_user_seconds_count")))
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket{")))
+                .andExpect(content().string(containsString("hikaricp_connections_active")))
+                .andExpect(content().string(containsString("hibernate_statements_total")))
+                .andExpect(content().string(containsString("app_password_hashing_queue")))
+                .andExpect(content().string(containsString("app_audit_buffer_depth")))
+                .andExpect(content().string(containsString("cache_gets_total{")));
+    }
+
+    @Test
+    void onlyHealthIsPublic() throws Exception {
+        mvc.perform(get("/actuator/health")).andExpect(status().isOk());
+        mvc.perform(get("/actuator/prometheus")).andExpect(status().isUnauthorized());
+        mvc.perform(get("/actuator/prometheus").with(httpBasic("user", "user"))).andExpect(status().isForbidden());
+    }
+}
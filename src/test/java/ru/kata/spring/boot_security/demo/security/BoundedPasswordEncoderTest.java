@@ -0,0 +1,81 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedPasswordEncoderTest {
+
+    @Test
+    void rejectsWhenPoolAndQueueAreFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(
+                new BlockingEncoder(release), 1, 1, Duration.ofSeconds(10));
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            // One call runs, one waits in the queue, the third is shed immediately.
+            callers.submit(() -> encoder.encode("a"));
+            callers.submit(() -> encoder.encode("b"));
+            while (encoder.getQueueDepth() < 1) {
+                Thread.sleep(5);
+            }
+
+            assertThrows(PasswordHashingRejectedException.class, () -> encoder.encode("c"));
+            assertEquals(1, encoder.getRejectedCount());
+        } finally {
+            release.countDown();
+            callers.shutdown();
+            assertTrue(callers.awaitTermination(5, TimeUnit.SECONDS));
+            encoder.destroy();
+        }
+    }
+
+    @Test
+    void timesOutSlowHashes() {
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(
+                new BlockingEncoder(new CountDownLatch(1)), 1, 1, Duration.ofMillis(50));
+        try {
+            assertThrows(PasswordHashingRejectedException.class, () -> encoder.matches("a", "a"));
+        } finally {
+            encoder.destroy();
+        }
+    }
+
+    private static class BlockingEncoder implements PasswordEncoder {
+
+        private final CountDownLatch release;
+
+        BlockingEncoder(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            await();
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            await();
+            return rawPassword.toString().equals(encodedPassword);
+        }
+
+        private void await() {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
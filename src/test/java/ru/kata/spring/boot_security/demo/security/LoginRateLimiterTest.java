@@ -0,0 +1,93 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoginRateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(-1_000_000_000L);
+
+    private LoginRateLimiter limiter(int addressCapacity, int usernameCapacity) {
+        return new LoginRateLimiter(
+                new LoginRateLimiter.Limit(addressCapacity, Duration.ofMinutes(1)),
+                new LoginRateLimiter.Limit(usernameCapacity, Duration.ofMinutes(1)),
+                1000, clock::get);
+    }
+
+    @Test
+    void usernameBucketEmptiesAndRefills() {
+        LoginRateLimiter limiter = limiter(100, 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("10.0.0." + i, "Admin"));
+        }
+        long wait = limiter.tryAcquire("10.0.0.9", " admin ");
+        assertTrue(wait > 0 && wait <= Duration.ofSeconds(20).toNanos(), "wait " + wait);
+        assertEquals(1, limiter.getRejectedByUsername());
+        assertEquals(0, limiter.tryAcquire("10.0.0.9", "someone-else"));
+
+        clock.addAndGet(Duration.ofSeconds(20).toNanos());
+        assertEquals(0, limiter.tryAcquire("10.0.0.9", "admin"));
+    }
+
+    @Test
+    void addressLimitHoldsUnderConcurrency() throws Exception {
+        LoginRateLimiter limiter = limiter(50, 1000);
+        AtomicInteger allowed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 400; i++) {
+            int attempt = i;
+            executor.submit(() -> {
+                if (limiter.tryAcquire("192.168.1.1", "user" + attempt) == 0) {
+                    allowed.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(50, allowed.get());
+        assertEquals(350, limiter.getRejectedByAddress());
+    }
+
+    @Test
+    void filterAnswers429BeforeTheLoginFilter() throws Exception {
+        LoginThrottleFilter filter = new LoginThrottleFilter(limiter(1, 10));
+
+        MockFilterChain passed = new MockFilterChain();
+        filter.doFilter(loginPost(), new MockHttpServletResponse(), passed);
+        assertNotNull(passed.getRequest());
+
+        MockFilterChain blocked = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(loginPost(), response, blocked);
+        assertNull(blocked.getRequest());
+        assertEquals(429, response.getStatus());
+        assertEquals("60", response.getHeader("Retry-After"));
+
+        MockFilterChain other = new MockFilterChain();
+        filter.doFilter(new MockHttpServletRequest("GET", "/login"), new MockHttpServletResponse(), other);
+        assertNotNull(other.getRequest());
+    }
+
+    private static MockHttpServletRequest loginPost() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/login");
+        request.setServletPath("/login");
+        request.setRemoteAddr("203.0.113.7");
+        request.addParameter("username", "admin");
+        return request;
+    }
+}
@@ -0,0 +1,111 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.RoleService;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.authenticated;
+
+/**
+ * Hashes weaker than the configured cost, or stored without the "{bcrypt}" prefix, are
+ * rewritten on the next successful login. The configured cost is raised to 5 here so the
+ * seeded hash can be weaker than it.
+ */
+@SpringBootTest(properties = "app.security.bcrypt.strength=5")
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class PasswordUpgradeTest {
+
+    private static final String PASSWORD = "secret";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private UserDAO userDAO;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void lowCostHashIsRehashedOnLogin() throws Exception {
+        String weak = "{bcrypt}" + new BCryptPasswordEncoder(4).encode(PASSWORD);
+
+        String upgraded = loginWithStoredHash("rehash-cost", weak);
+
+        assertTrue(upgraded.startsWith("{bcrypt}$2a$05$"), upgraded);
+    }
+
+    @Test
+    void legacyHashWithoutPrefixIsRehashedOnLogin() throws Exception {
+        String legacy = new BCryptPasswordEncoder(5).encode(PASSWORD);
+
+        String upgraded = loginWithStoredHash("rehash-legacy", legacy);
+
+        assertTrue(upgraded.startsWith("{bcrypt}$2a$05$"), upgraded);
+    }
+
+    // Seeds the hash, logs in three times and returns the hash stored after the first login
+    private String loginWithStoredHash(String username, String storedHash) throws Exception {
+        User user = new User(username, PASSWORD, "Rehash", 30, username + "@mail.ru");
+        userService.save(user, Set.of(roleService.getRoleByName("ROLE_USER")));
+        new TransactionTemplate(transactionManager)
+                .executeWithoutResult(status -> userDAO.updatePassword(user.getId(), storedHash));
+        assertEquals(storedHash, storedHash(username));
+
+        mvc.perform(formLogin().user(username).password(PASSWORD))
+                .andExpect(authenticated().withUsername(username));
+        String upgraded = storedHash(username);
+        assertNotEquals(storedHash, upgraded);
+
+        // Reloads the principal with the new hash and caches it; no second upgrade
+        mvc.perform(formLogin().user(username).password(PASSWORD))
+                .andExpect(authenticated().withUsername(username));
+        assertEquals(upgraded, storedHash(username));
+        UserDetails cached = userCache.getUserFromCache(username);
+        assertNotNull(cached);
+        assertEquals(upgraded, cached.getPassword());
+
+        // Served from the cached principal
+        mvc.perform(formLogin().user(username).password(PASSWORD))
+                .andExpect(authenticated().withUsername(username));
+        assertEquals(upgraded, storedHash(username));
+        return upgraded;
+    }
+
+    private String storedHash(String username) {
+        return jdbcTemplate.queryForObject("SELECT password FROM user WHERE username = ?", String.class, username);
+    }
+}
@@ -0,0 +1,111 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.servlet.http.Cookie;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "app.security.stateless.enabled=true",
+        "app.security.login-throttle.username.capacity=3"
+})
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class StatelessModeTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void formLoginSetsTokenCookiesInsteadOfASession() throws Exception {
+        MockHttpServletResponse login = mvc.perform(post("/login").with(csrf())
+                        .param("username", "user").param("password", "user"))
+                .andExpect(redirectedUrl("/user"))
+                .andReturn().getResponse();
+        assertNull(login.getCookie("JSESSIONID"));
+        Cookie access = login.getCookie(TokenCookies.ACCESS);
+        Cookie refresh = login.getCookie(TokenCookies.REFRESH);
+        assertNotNull(access);
+        assertNotNull(refresh);
+
+        mvc.perform(get("/user").cookie(access)).andExpect(status().isOk());
+        mvc.perform(get("/admin").cookie(access)).andExpect(status().isForbidden());
+
+        // Access cookie gone (expired in the browser): the refresh cookie brings a new one
+        MockHttpServletResponse refreshed = mvc.perform(get("/user").cookie(refresh))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+        assertNotNull(refreshed.getCookie(TokenCookies.ACCESS));
+
+        mvc.perform(get("/user").accept(MediaType.TEXT_HTML).cookie(new Cookie(TokenCookies.ACCESS, "forged")))
+                .andExpect(redirectedUrl("http://localhost/login"));
+    }
+
+    @Test
+    void bearerTokensForTheApi() throws Exception {
+        MockHttpServletResponse issued = mvc.perform(post("/auth/token").with(httpBasic("admin", "admin")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+        JsonNode tokens = objectMapper.readTree(issued.getContentAsString());
+        String accessToken = tokens.get("access_token").asText();
+
+        mvc.perform(get("/api/roles").header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken))
+                .andExpect(status().isOk());
+        mvc.perform(get("/api/roles").header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken + "x"))
+                .andExpect(status().isUnauthorized());
+        // An access token cannot buy a new refresh token
+        mvc.perform(post("/auth/token").header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken))
+                .andExpect(status().isForbidden());
+
+        MockHttpServletResponse refreshed = mvc.perform(post("/auth/refresh")
+                        .param("refresh_token", tokens.get("refresh_token").asText()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+        assertEquals("Bearer", objectMapper.readTree(refreshed.getContentAsString()).get("token_type").asText());
+        mvc.perform(post("/auth/refresh").param("refresh_token", accessToken))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void badBasicCredentialsOnTheTokenEndpointAreThrottled() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mvc.perform(post("/auth/token").with(httpBasic("stuffed", "guess" + i)))
+                    .andExpect(status().isUnauthorized());
+        }
+        mvc.perform(post("/auth/token").with(httpBasic("stuffed", "guess")))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+        // The same bucket guards the API
+        mvc.perform(get("/api/roles").with(httpBasic("Stuffed", "guess")))
+                .andExpect(status().isTooManyRequests());
+
+        // Successful Basic requests give their attempt back
+        for (int i = 0; i < 5; i++) {
+            mvc.perform(get("/api/roles").with(httpBasic("admin", "admin")))
+                    .andExpect(status().isOk());
+        }
+    }
+}
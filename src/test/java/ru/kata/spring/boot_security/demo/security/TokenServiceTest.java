@@ -0,0 +1,126 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TokenServiceTest {
+
+    private static final String OLD_KEY = "old:" + secret(1);
+    private static final String NEW_KEY = "new:" + secret(2);
+
+    private final Map<String, UserPrincipal> users = new HashMap<>();
+    private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+    private TokenService service(String keys) {
+        Clock clock = new Clock() {
+            @Override
+            public ZoneOffset getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(java.time.ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return now;
+            }
+        };
+        return new TokenService(keys, Duration.ofMinutes(15), Duration.ofHours(8), username -> {
+            UserPrincipal user = users.get(username);
+            if (user == null) {
+                throw new UsernameNotFoundException(username);
+            }
+            return user;
+        }, new ObjectMapper(), clock);
+    }
+
+    private static String secret(int seed) {
+        byte[] bytes = new byte[32];
+        bytes[0] = (byte) seed;
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    private UserPrincipal user(int id, String username, String... roles) {
+        UserPrincipal user = new UserPrincipal(id, username, "hash", List.of(roles));
+        users.put(username, user);
+        return user;
+    }
+
+    @Test
+    void accessTokenCarriesIdAndAuthoritiesUntilItExpires() {
+        TokenService tokens = service(OLD_KEY);
+        String token = tokens.issue(user(7, "alice", "ROLE_ADMIN", "ROLE_USER"), TokenService.Type.ACCESS);
+
+        TokenService.Claims claims = tokens.verify(token, TokenService.Type.ACCESS);
+        assertNotNull(claims);
+        UserPrincipal principal = tokens.toPrincipal(claims);
+        assertEquals(7, principal.getId());
+        assertEquals("alice", principal.getUsername());
+        assertEquals(Set.of("ROLE_ADMIN", "ROLE_USER"), Set.of(claims.getAuthorities().toArray()));
+
+        // Wrong type, tampered payload, tampered signature
+        assertNull(tokens.verify(token, TokenService.Type.REFRESH));
+        String[] parts = token.split("\\.");
+        String forged = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                new String(Base64.getUrlDecoder().decode(parts[1])).replace("\"uid\":7", "\"uid\":1").getBytes());
+        assertNull(tokens.verify(parts[0] + "." + forged + "." + parts[2], TokenService.Type.ACCESS));
+        assertNull(tokens.verify(token.substring(0, token.length() - 2) + "AA", TokenService.Type.ACCESS));
+        assertNull(tokens.verify("garbage", TokenService.Type.ACCESS));
+
+        now = now.plus(Duration.ofMinutes(15));
+        assertNull(tokens.verify(token, TokenService.Type.ACCESS));
+    }
+
+    @Test
+    void rotatedKeysKeepVerifyingUntilRemoved() {
+        String token = service(OLD_KEY).issue(user(1, "bob", "ROLE_USER"), TokenService.Type.ACCESS);
+
+        TokenService rotated = service(NEW_KEY + "," + OLD_KEY);
+        assertNotNull(rotated.verify(token, TokenService.Type.ACCESS));
+        String fresh = rotated.issue(users.get("bob"), TokenService.Type.ACCESS);
+        assertEquals("new", fresh.substring(0, fresh.indexOf('.')));
+
+        TokenService retired = service(NEW_KEY);
+        assertNull(retired.verify(token, TokenService.Type.ACCESS));
+        assertNotNull(retired.verify(fresh, TokenService.Type.ACCESS));
+
+        assertThrows(IllegalStateException.class, () -> service("short:" + Base64.getEncoder().encodeToString(new byte[8])));
+    }
+
+    @Test
+    void refreshReloadsTheUser() {
+        TokenService tokens = service(OLD_KEY);
+        UserPrincipal carol = user(3, "carol", "ROLE_USER");
+        String refresh = tokens.issue(carol, TokenService.Type.REFRESH);
+        assertNull(tokens.refresh(tokens.issue(carol, TokenService.Type.ACCESS)));
+
+        UserPrincipal promoted = user(3, "carol", "ROLE_USER", "ROLE_ADMIN");
+        assertSame(promoted, tokens.refresh(refresh));
+
+        // Same username, different account
+        user(4, "carol", "ROLE_ADMIN");
+        assertNull(tokens.refresh(refresh));
+        users.clear();
+        assertNull(tokens.refresh(refresh));
+    }
+}
@@ -0,0 +1,62 @@
+package ru.kata.spring.boot_security.demo.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserPrincipalTest {
+
+    @Test
+    void sessionFormIsCompactAndSharesAuthorities() throws Exception {
+        UserPrincipal principal = new UserPrincipal(42, "session-user",
+                "{bcrypt}$2a$12$abcdefghijklmnopqrstuuJ0sQ0d4u9bJ1x3o5g8WQ0z3Fh5K4Vq6",
+                List.of("ROLE_USER", "ROLE_ADMIN"));
+        UserPrincipal sameRoles = new UserPrincipal(43, "other", null, List.of("ROLE_ADMIN", "ROLE_USER"));
+        assertSame(principal.getAuthorities(), sameRoles.getAuthorities());
+
+        byte[] principalBytes = serialize(principal);
+        assertTrue(principalBytes.length < 150, "principal is " + principalBytes.length + " bytes");
+
+        // What HttpSessionSecurityContextRepository stores
+        SecurityContextImpl context = new SecurityContextImpl(new UsernamePasswordAuthenticationToken(
+                principal, null, principal.getAuthorities()));
+        SecurityContextImpl restored = (SecurityContextImpl) deserialize(serialize(context));
+
+        UserPrincipal restoredPrincipal = (UserPrincipal) restored.getAuthentication().getPrincipal();
+        assertEquals(42, restoredPrincipal.getId());
+        assertEquals("session-user", restoredPrincipal.getUsername());
+        assertNull(restoredPrincipal.getPassword());
+        assertEquals(principal, restoredPrincipal);
+        assertSame(principal.getAuthorities(), restoredPrincipal.getAuthorities());
+        List<GrantedAuthority> tokenAuthorities = new ArrayList<>(restored.getAuthentication().getAuthorities());
+        assertTrue(principal.getAuthorities().stream().anyMatch(a -> a == tokenAuthorities.get(0)));
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+}
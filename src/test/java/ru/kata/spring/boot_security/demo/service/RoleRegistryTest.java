@@ -0,0 +1,64 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.kata.spring.boot_security.demo.model.Role;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class RoleRegistryTest {
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void resetStatistics() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void lookupsDoNotQueryTheDatabase() {
+        Role admin = roleService.getRoleByName("ROLE_ADMIN");
+        assertNotNull(admin);
+        assertEquals(admin, roleService.getRoleById(admin.getId()));
+        assertEquals(2, roleService.getRolesByNames(Set.of("ROLE_ADMIN", "ROLE_USER")).size());
+        assertEquals(2, roleService.getRolesByIds(List.of(admin.getId(), roleService.getRoleByName("ROLE_USER").getId())).size());
+        assertEquals(2, roleService.getAllRoles().size());
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void missFallsBackToOneQueryAndWritesRefreshTheRegistry() {
+        assertEquals(1, roleService.getRolesByNames(Set.of("ROLE_USER", "ROLE_AUDITOR", "ROLE_GUEST")).size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        Role auditor = new Role("ROLE_AUDITOR");
+        roleService.saveRole(auditor);
+        statistics.clear();
+        assertNotNull(roleService.getRoleByName("ROLE_AUDITOR"));
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        roleService.deleteRole(auditor.getId());
+        assertNull(roleService.getRoleById(auditor.getId()));
+    }
+}
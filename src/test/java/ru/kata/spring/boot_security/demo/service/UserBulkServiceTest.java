@@ -0,0 +1,87 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.dto.BulkResult;
+import ru.kata.spring.boot_security.demo.dto.BulkResult.Outcome;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class UserBulkServiceTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private UserDAO userDAO;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    void grantsRevokesAndDeletesInChunks() {
+        // Chunks of two, so three users and a missing id span two transactions
+        UserBulkService bulkService = new UserBulkServiceImpl(userDAO, roleService, transactionManager,
+                eventPublisher, 2);
+        Role admin = roleService.getRoleByName("ROLE_ADMIN");
+        Role user = roleService.getRoleByName("ROLE_USER");
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            User saved = new User("bulk-" + i, "secret", "Bulk", 30, "bulk" + i + "@mail.ru");
+            userService.save(saved, Set.of(user));
+            ids.add(saved.getId());
+        }
+        // Cache the collection first: the grant has to evict it
+        assertEquals(1, userService.getUserByIdWithRoles(ids.get(0)).getRoles().size());
+        List<Integer> request = new ArrayList<>(ids);
+        request.add(Integer.MAX_VALUE);
+
+        long version = userService.getUser(ids.get(0)).getVersion();
+        BulkResult granted = bulkService.grantRole(request, admin.getId());
+        ids.forEach(id -> assertEquals(Outcome.GRANTED, granted.get(id)));
+        assertEquals(Outcome.NOT_FOUND, granted.get(Integer.MAX_VALUE));
+        assertEquals(2, userService.getUserByIdWithRoles(ids.get(0)).getRoles().size());
+        // A form read before the grant is stale now
+        assertEquals(version + 1, userService.getUser(ids.get(0)).getVersion());
+
+        BulkResult again = bulkService.grantRole(ids, admin.getId());
+        assertEquals(3, again.getCounts().get(Outcome.UNCHANGED));
+
+        BulkResult revoked = bulkService.revokeRole(List.of(ids.get(0), ids.get(1)), admin.getId());
+        assertEquals(2, revoked.getCounts().get(Outcome.REVOKED));
+        assertEquals(1, userService.getUserByIdWithRoles(ids.get(1)).getRoles().size());
+
+        BulkResult deleted = bulkService.deleteUsers(request, ids.get(2));
+        assertEquals(Outcome.DELETED, deleted.get(ids.get(0)));
+        assertEquals(Outcome.DELETED, deleted.get(ids.get(1)));
+        assertEquals(Outcome.SKIPPED, deleted.get(ids.get(2)));
+        assertEquals(Outcome.NOT_FOUND, deleted.get(Integer.MAX_VALUE));
+        assertNull(userService.getUser(ids.get(0)));
+        assertFalse(userService.existsByUsername("bulk-1"));
+        assertNotNull(userService.getUser(ids.get(2)));
+        assertTrue(userDAO.getUserIdsWithRole(ids, admin.getId()).contains(ids.get(2)));
+    }
+}
@@ -0,0 +1,45 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "app.export.fetch-size=2")
+@ActiveProfiles("test")
+class UserExportServiceTest {
+
+    @Autowired
+    private UserExportService exportService;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void exportsEveryUserOnceWithRoles() throws Exception {
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        exportService.export(csv, UserExportService.Format.CSV);
+        List<String> lines = Arrays.asList(csv.toString(StandardCharsets.UTF_8).split("\n"));
+
+        assertEquals("id,username,name,age,email,roles", lines.get(0));
+        assertEquals(userService.getAllUsers().size(), lines.size() - 1);
+        String admin = lines.stream().filter(l -> l.contains(",admin,")).findFirst().orElseThrow();
+        assertTrue(admin.endsWith("ROLE_ADMIN;ROLE_USER") || admin.endsWith("ROLE_USER;ROLE_ADMIN"), admin);
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        exportService.export(ndjson, UserExportService.Format.NDJSON);
+        List<String> records = Arrays.stream(ndjson.toString(StandardCharsets.UTF_8).split("\n"))
+                .collect(Collectors.toList());
+        assertEquals(lines.size() - 1, records.size());
+        assertTrue(records.stream().noneMatch(r -> r.contains("password")));
+    }
+}
@@ -0,0 +1,79 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import ru.kata.spring.boot_security.demo.dto.UserDto;
+import ru.kata.spring.boot_security.demo.dto.UserPatch;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class UserPatchTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void patchUpdatesOnlyGivenFieldsAndBumpsVersion() {
+        User saved = new User("patch-me", "secret", "Patch", 30, "patch@mail.ru");
+        userService.save(saved);
+        long version = userService.getUserDto(saved.getId()).getVersion();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        UserPatch patch = new UserPatch();
+        patch.setAge(31);
+        patch.setVersion(version);
+        statistics.clear();
+        UserDto patched = userService.patch(saved.getId(), patch);
+
+        assertEquals(1, statistics.getEntityUpdateCount());
+        assertEquals(31, patched.getAge());
+        assertEquals("Patch", patched.getName());
+        assertEquals(version + 1, patched.getVersion());
+
+        // The same version again is stale now
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> userService.patch(saved.getId(), patch));
+        assertNull(userService.patch(Integer.MAX_VALUE, patch));
+    }
+
+    @Test
+    void updateKeepsHashWhenFormSendsItBack() {
+        User saved = new User("patch-hash", "secret", "Hash", 40, "hash@mail.ru");
+        userService.save(saved);
+        User current = userService.getUser(saved.getId());
+        String hash = current.getPassword();
+
+        User edited = new User("patch-hash", hash, "Hash Renamed", 40, "hash@mail.ru");
+        edited.setId(saved.getId());
+        edited.setVersion(current.getVersion());
+        userService.update(edited);
+
+        User updated = userService.getUser(saved.getId());
+        assertEquals(hash, updated.getPassword());
+        assertEquals("Hash Renamed", updated.getName());
+        assertNotEquals(current.getVersion(), updated.getVersion());
+
+        // A form rendered before that update carries the old version
+        User stale = new User("patch-hash", "", "Lost", 40, "hash@mail.ru");
+        stale.setId(saved.getId());
+        stale.setVersion(current.getVersion());
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> userService.update(stale));
+        assertEquals("Hash Renamed", userService.getUser(saved.getId()).getName());
+    }
+}
@@ -0,0 +1,70 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.kata.spring.boot_security.demo.dto.ProvisioningReport;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "app.provisioning.batch-size=3")
+@ActiveProfiles("test")
+class UserProvisioningServiceTest {
+
+    @Autowired
+    private UserProvisioningService provisioningService;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void importsCsvInBatchesAndReportsRejectedRows() throws Exception {
+        StringBuilder csv = new StringBuilder("username,password,name,age,email,roles\n");
+        for (int i = 0; i < 7; i++) {
+            csv.append("csv_").append(i).append(",secret,\"Csv, ").append(i).append("\",30,csv")
+                    .append(i).append("@mail.ru,ROLE_USER;ROLE_ADMIN\n");
+        }
+        csv.append("csv_0,secret,Duplicate,30,dup@mail.ru,\n");
+        csv.append("admin,secret,Existing,30,admin2@mail.ru,\n");
+        csv.append("csv_bad,secret,Bad,abc,bad@mail.ru,\n");
+        csv.append("csv_role,secret,Role,30,role@mail.ru,ROLE_NOPE\n");
+
+        ProvisioningReport report = provisioningService.provision(
+                new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)),
+                UserProvisioningService.Format.CSV);
+
+        assertEquals(11, report.getTotalRows());
+        assertEquals(7, report.getImportedRows());
+        assertEquals(4, report.getRejectedRows());
+        assertTrue(report.getRejected().stream().anyMatch(r -> r.getLine() == 10 && "admin".equals(r.getUsername())));
+
+        User imported = userService.getUserByUsernameWithRoles("csv_6");
+        assertNotNull(imported);
+        assertEquals("Csv, 6", imported.getName());
+        assertEquals(2, imported.getRoles().size());
+        assertTrue(userService.loadUserByUsername("csv_6").getPassword().startsWith("{bcrypt}"));
+    }
+
+    @Test
+    void importsJson() throws Exception {
+        String json = "[{\"username\":\"json_1\",\"password\":\"secret\",\"name\":\"Json\",\"age\":40,"
+                + "\"email\":\"json1@mail.ru\",\"roles\":[\"ROLE_USER\"]},"
+                + "{\"username\":\"json_2\",\"password\":\"secret\",\"name\":\"Json\",\"age\":41,"
+                + "\"email\":\"not-an-email\"}]";
+
+        ProvisioningReport report = provisioningService.provision(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)),
+                UserProvisioningService.Format.JSON);
+
+        assertEquals(1, report.getImportedRows());
+        assertEquals(2, report.getRejected().get(0).getLine());
+        assertEquals(40, userService.getUserByUsername("json_1").getAge());
+    }
+}
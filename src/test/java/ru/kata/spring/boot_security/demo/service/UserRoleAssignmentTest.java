@@ -0,0 +1,89 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class UserRoleAssignmentTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void updateWritesOnlyChangedJoinRows() {
+        Role admin = roleService.getRoleByName("ROLE_ADMIN");
+        Role user = roleService.getRoleByName("ROLE_USER");
+        User saved = new User("roles-diff", "secret", "Roles", 33, "roles@mail.ru");
+        userService.save(saved, Set.of(user));
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        User edited = new User("roles-diff", "", "Renamed", 34, "roles@mail.ru");
+        edited.setId(saved.getId());
+        statistics.clear();
+        userService.update(edited, List.of(admin.getId(), user.getId()));
+
+        assertEquals(0, statistics.getCollectionRecreateCount());
+        assertEquals(0, statistics.getCollectionRemoveCount());
+        assertEquals(0, statistics.getEntityInsertCount());
+        assertEquals(1, statistics.getEntityUpdateCount());
+        assertEquals(Set.of("ROLE_ADMIN", "ROLE_USER"), roleNames(saved.getId()));
+        assertEquals("Renamed", userService.getUser(saved.getId()).getName());
+
+        userService.assignRoles(saved.getId(), List.of(admin.getId()));
+        assertEquals(Set.of("ROLE_ADMIN"), roleNames(saved.getId()));
+        assertEquals(1, userService.loadUserByUsername("roles-diff").getAuthorities().size());
+    }
+
+    @Test
+    void rolesOnlyEditBumpsVersionSoStaleFormIsRefused() {
+        Role admin = roleService.getRoleByName("ROLE_ADMIN");
+        Role user = roleService.getRoleByName("ROLE_USER");
+        User saved = new User("roles-stale", "secret", "Stale", 35, "stale@mail.ru");
+        userService.save(saved, Set.of(user));
+        // Cached, so a missed eviction would hand the old version back
+        long version = userService.getUser(saved.getId()).getVersion();
+
+        // First admin: same fields, one more role
+        User first = new User("roles-stale", "", "Stale", 35, "stale@mail.ru");
+        first.setId(saved.getId());
+        first.setVersion(version);
+        userService.update(first, List.of(admin.getId(), user.getId()));
+        assertEquals(version + 1, userService.getUser(saved.getId()).getVersion());
+
+        // Second admin, form rendered before that: puts the old role set back
+        User second = new User("roles-stale", "", "Stale", 35, "stale@mail.ru");
+        second.setId(saved.getId());
+        second.setVersion(version);
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> userService.update(second, List.of(user.getId())));
+        assertEquals(Set.of("ROLE_ADMIN", "ROLE_USER"), roleNames(saved.getId()));
+    }
+
+    private Set<String> roleNames(int userId) {
+        return userService.getUserByIdWithRoles(userId).getRoles().stream()
+                .map(Role::getName)
+                .collect(Collectors.toSet());
+    }
+}
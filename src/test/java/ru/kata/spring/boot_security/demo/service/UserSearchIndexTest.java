@@ -0,0 +1,138 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.dto.UserDto;
+import ru.kata.spring.boot_security.demo.dto.UserSearchPage;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class UserSearchIndexTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private UserSearchIndex searchIndex;
+
+    @Autowired
+    private UserDAO userDAO;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void ranksPrefixAndWordMatchesAndFollowsChanges() {
+        assertTrue(searchIndex.isReady());
+        User exact = save("zorin", "Pavel Zorin", "pz@corp.example");
+        User prefix = save("zorina.k", "Kira Zorina", "kira@corp.example");
+        User word = save("kz77", "Zorin Kirill", "kirill@zorin.example");
+
+        // exact username, then username prefix, then the exact word before the word prefix
+        assertEquals(List.of("zorin", "zorina.k", "kz77"), usernames("ZOR"));
+        assertEquals(List.of("zorin", "zorina.k", "kz77"), usernames("zorin"));
+        assertEquals(List.of("kz77", "zorina.k"), usernames("kir"));
+        assertEquals(List.of("zorina.k", "kz77"), usernames("kir zor"));
+        // every word of the query has to match
+        assertEquals(List.of("kz77"), usernames("kirill zor"));
+
+        UserSearchPage first = userService.searchUsers("zor", 0, 2);
+        assertTrue(first.isHasNext());
+        assertEquals("ROLE_USER", first.getContent().get(0).getRoles().get(0));
+        UserSearchPage second = userService.searchUsers("zor", 1, 2);
+        assertFalse(second.isHasNext());
+        assertEquals(List.of("kz77"), second.getContent().stream().map(UserDto::getUsername).collect(Collectors.toList()));
+
+        // The database fallback used while the index loads splits the query the same way
+        assertEquals(List.of("kz77", "zorina.k"), userDAO.searchUserDtosByTerms(List.of("Kir", "Zor"), 0, 10).stream()
+                .map(UserDto::getUsername)
+                .collect(Collectors.toList()));
+
+        User renamed = new User("smirnova.k", "", "Kira Smirnova", 30, "kira@corp.example");
+        renamed.setId(prefix.getId());
+        userService.update(renamed);
+        assertEquals(List.of("zorin", "kz77"), usernames("zor"));
+        assertEquals(List.of("smirnova.k"), usernames("smir"));
+
+        userService.delete(exact.getId());
+        userService.delete(word.getId());
+        assertEquals(List.of(), usernames("zor"));
+    }
+
+    @Test
+    void filtersBeforeCappingSoBroadTermsLoseNoMatches() {
+        // Fed from events only, without the database
+        UserSearchIndex index = new UserSearchIndex(null, null);
+        for (int id = 1; id <= 3000; id++) {
+            index.onUserChanged(UserChangedEvent.saved(indexed(id, "cm" + id, "Common Person")));
+        }
+        index.onUserChanged(UserChangedEvent.saved(indexed(3001, "target", "Common Rare")));
+
+        // "common" is the longer term but has 3001 postings; "rare" has one
+        assertEquals(List.of(3001), index.search("common rare", 0, 10));
+        assertEquals(List.of(3001), index.search("rare commo", 0, 10));
+        // The last page of a broad prefix is still complete
+        assertEquals(11, index.search("common", 2990, 20).size());
+        assertEquals(List.of(), index.search("common", 3001, 20));
+    }
+
+    @Test
+    void pageFarPastTheResultsIsEmpty() {
+        save("farpage", "Far Page", "farpage@mail.ru");
+
+        assertEquals(List.of("farpage"), usernames("farpage"));
+        // page * size overflows int here
+        UserSearchPage page = userService.searchUsers("farpage", Integer.MAX_VALUE / 10, 20);
+        assertTrue(page.getContent().isEmpty());
+        assertFalse(page.isHasNext());
+        assertTrue(userService.searchUsers("farpage", 1000, 20).getContent().isEmpty());
+    }
+
+    @Test
+    void loadClosesItsSession() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long opened = statistics.getSessionOpenCount();
+        long closed = statistics.getSessionCloseCount();
+
+        searchIndex.load();
+
+        assertEquals(1, statistics.getSessionOpenCount() - opened);
+        assertEquals(1, statistics.getSessionCloseCount() - closed);
+    }
+
+    private static User indexed(int id, String username, String name) {
+        User user = new User(username, "secret", name, 30, username + "@corp.example");
+        user.setId(id);
+        return user;
+    }
+
+    private User save(String username, String name, String email) {
+        User user = new User(username, "secret", name, 30, email);
+        userService.save(user, Set.of(roleService.getRoleByName("ROLE_USER")));
+        return user;
+    }
+
+    private List<String> usernames(String query) {
+        return userService.searchUsers(query, 0, 20).getContent().stream()
+                .map(UserDto::getUsername)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,138 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.audit.AuditTrail;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hammers loadUserByUsername/update from many threads at once. Every thread must see
+ * its own writes, and every call must get its own persistence context that is closed when
+ * the call returns (no shared, never-cleared EntityManager collecting entities).
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class UserServiceConcurrencyTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserServiceConcurrencyTest.class);
+
+    private static final int USERS = 64;
+    private static final int CALLS_PER_RUN = 800;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserDAO userDAO;
+
+    @Autowired
+    private RoleService roleService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private AuditTrail auditTrail;
+
+    @BeforeAll
+    void seedUsers() {
+        // Cheap hashes keep the test about the persistence layer, not about bcrypt.
+        String hash = BCrypt.hashpw("secret", BCrypt.gensalt(4));
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (int i = 0; i < USERS; i++) {
+                User user = new User("load_" + i, hash, "Load " + i, 20, "load_" + i + "@mail.ru");
+                user.setRoles(Set.of(roleService.getRoleByName("ROLE_USER")));
+                userDAO.save(user);
+            }
+        });
+    }
+
+    @Test
+    void parallelLoadAndUpdateSeeOwnWritesInOwnPersistenceContexts() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        runCalls(4); // warm-up
+        auditTrail.flush();
+        long opened = statistics.getSessionOpenCount();
+        long closed = statistics.getSessionCloseCount();
+
+        int calls = 0;
+        for (int threads : new int[]{1, 4, 16, 64}) {
+            calls += runCalls(threads);
+        }
+        auditTrail.flush();
+
+        // Four transactional service calls per iteration (two per counted call), each with its own session
+        long sessions = statistics.getSessionOpenCount() - opened;
+        assertTrue(sessions >= 2L * calls, sessions + " sessions for " + calls + " calls");
+        assertEquals(sessions, statistics.getSessionCloseCount() - closed, "sessions left open");
+    }
+
+    // Returns the number of calls made, CALLS_PER_RUN rounded down to whole iterations per thread
+    private int runCalls(int threads) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        int perThread = CALLS_PER_RUN / threads / 2;
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            tasks.add(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    // USERS is a multiple of every thread count, so each user is written by
+                    // exactly one thread and a read after our own update must see it.
+                    String username = "load_" + (thread + i * threads) % USERS;
+                    int age = (i % 90) + 1;
+
+                    User user = userService.getUserByUsernameWithRoles(username);
+                    user.setAge(age);
+                    user.setPassword("");
+                    userService.update(user);
+
+                    User loaded = userService.getUserByUsernameWithRoles(username);
+                    assertEquals(age, loaded.getAge(), "stale read for " + username);
+                    assertEquals(1, userService.loadUserByUsername(username).getAuthorities().size());
+                }
+                return null;
+            });
+        }
+
+        long start = System.nanoTime();
+        for (Future<Void> future : pool.invokeAll(tasks)) {
+            future.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+
+        int calls = perThread * threads * 2;
+        logger.info("{} threads: {} calls/s", threads, String.format("%.0f", calls / seconds));
+        return calls;
+    }
+}
@@ -0,0 +1,79 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.kata.spring.boot_security.demo.dto.KeysetPage;
+import ru.kata.spring.boot_security.demo.dto.UserSort;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class UserServiceKeysetPageTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RoleService roleService;
+
+    @BeforeAll
+    void seedUsers() {
+        for (int i = 0; i < 25; i++) {
+            userService.save(new User(String.format("page_%02d", i), "secret", "Page " + i, 20, "page" + i + "@mail.ru"),
+                    Set.of(roleService.getRoleByName("ROLE_USER")));
+        }
+    }
+
+    @Test
+    void walksAllUsersForwardAndBackByUsername() {
+        List<String> expected = userService.getAllUsers().stream()
+                .map(User::getUsername).sorted().collect(Collectors.toList());
+
+        List<String> forward = new ArrayList<>();
+        List<KeysetPage<User>> pages = new ArrayList<>();
+        KeysetPage<User> page = userService.getUsersPage(UserSort.USERNAME, null, null, 7);
+        assertFalse(page.isHasPrevious());
+        while (true) {
+            pages.add(page);
+            page.getContent().forEach(u -> forward.add(u.getUsername()));
+            if (!page.isHasNext()) {
+                break;
+            }
+            page = userService.getUsersPage(UserSort.USERNAME, page.getNextCursor(), null, 7);
+        }
+        assertEquals(expected, forward);
+
+        KeysetPage<User> last = pages.get(pages.size() - 1);
+        KeysetPage<User> previous = userService.getUsersPage(UserSort.USERNAME, null, last.getPreviousCursor(), 7);
+        assertEquals(names(pages.get(pages.size() - 2)), names(previous));
+        assertTrue(previous.isHasNext());
+    }
+
+    @Test
+    void pagesByIdInOrder() {
+        KeysetPage<User> first = userService.getUsersPage(UserSort.ID, null, null, 10);
+        KeysetPage<User> second = userService.getUsersPage(UserSort.ID, first.getNextCursor(), null, 10);
+
+        assertEquals(10, first.getContent().size());
+        assertTrue(first.getContent().get(9).getId() < second.getContent().get(0).getId());
+        assertTrue(second.isHasPrevious());
+    }
+
+    private static List<String> names(KeysetPage<User> page) {
+        return page.getContent().stream().map(User::getUsername).collect(Collectors.toList());
+    }
+}
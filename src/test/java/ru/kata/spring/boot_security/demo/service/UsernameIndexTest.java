@@ -0,0 +1,78 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class UsernameIndexTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UsernameIndex usernameIndex;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void freeUsernameIsAnsweredWithoutQuery() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        assertFalse(userService.isUsernameTaken("index-free-name", 0));
+        assertFalse(userService.existsByUsername("index-free-name"));
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void indexFollowsSaveUpdateAndDelete() {
+        User user = new User("index-user", "secret", "Index", 30, "index@mail.ru");
+        userService.save(user);
+        assertTrue(usernameIndex.mightContain("index-user"));
+        assertTrue(userService.isUsernameTaken("index-user", 0));
+        assertFalse(userService.isUsernameTaken("index-user", user.getId()));
+
+        user.setUsername("index-renamed");
+        user.setPassword("");
+        userService.update(user);
+        assertFalse(usernameIndex.mightContain("index-user"));
+        assertTrue(usernameIndex.mightContain("index-renamed"));
+
+        userService.delete(user.getId());
+        assertFalse(usernameIndex.mightContain("index-renamed"));
+    }
+
+    @Test
+    void lookupIgnoresCaseAndAccentsLikeTheCollation() {
+        userService.save(new User("index-case", "secret", "Case", 30, "case@mail.ru"));
+
+        assertTrue(usernameIndex.mightContain("Index-CASE"));
+        assertTrue(usernameIndex.mightContain("\u00ednd\u00e9x-case"));
+        assertFalse(usernameIndex.mightContain("index-cases"));
+    }
+
+    @Test
+    void loadClosesItsSession() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long opened = statistics.getSessionOpenCount();
+        long closed = statistics.getSessionCloseCount();
+
+        usernameIndex.load();
+
+        assertEquals(1, statistics.getSessionOpenCount() - opened);
+        assertEquals(1, statistics.getSessionCloseCount() - closed);
+    }
+}
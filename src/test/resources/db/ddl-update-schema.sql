@@ -0,0 +1,9 @@
+-- What hibernate.ddl-auto=update created for the entities before the migrations were
+-- introduced (Hibernate 5.6, MySQL8Dialect, Spring Boot naming), one statement per line.
+create table role (role_id bigint not null auto_increment, name varchar(255), primary key (role_id)) engine=InnoDB;
+create table user (user_id integer not null auto_increment, age integer, email varchar(255), name varchar(255), password varchar(255) not null, username varchar(255) not null, primary key (user_id)) engine=InnoDB;
+create table users_roles (user_id integer not null, role_id bigint not null, primary key (user_id, role_id)) engine=InnoDB;
+alter table role add constraint UK_8sewwnpamngi6b1dwaa88askk unique (name);
+alter table user add constraint UK_sb8bbouer5wak8vyiiy4pf2bx unique (username);
+alter table users_roles add constraint FKt4v0rrweyk393bdgt107vdx0x foreign key (role_id) references role (role_id);
+alter table users_roles add constraint FKgd3iendaoyh04b95ykqise6qh foreign key (user_id) references user (user_id);